@@ -1,6 +1,11 @@
 #!/bin/bash
 
+# usage: rlinkern.sh <tsp name> <nb kicks> [tour file] [seed]
+
 # read config
 . config.properties
 
-./bins/linkern/linkern -I 0 -R $2 -o ./bins/linkern/$1.tour ${tspdata}$1.tsp 
+out=${3:-./bins/linkern/$1.tour}
+seed=${4:+-s $4}
+
+./bins/linkern/linkern -I 0 -R $2 $seed -o $out ${tspdata}$1.tsp 
@@ -2,6 +2,7 @@ package ea;
 
 import ttp.TTPSolution;
 import utils.Deb;
+import utils.RandGen;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -144,7 +145,7 @@ public class ERX2 {
         }
         else {
           // choose randomly
-          if (Math.random()>.5) {
+          if (RandGen.random()>.5) {
             imin = y1;
             pid = 1;ones++;
           }
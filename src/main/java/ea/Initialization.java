@@ -1,15 +1,17 @@
 package ea;
 
+import solver.Constructive;
 import solver.TTPHeuristic;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.ConfigHelper;
 import utils.Deb;
 import utils.GraphHelper;
+import utils.LinKernighan;
+import utils.RandGen;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
 
@@ -18,7 +20,13 @@ import java.util.*;
  */
 public class Initialization extends TTPHeuristic {
 
-  protected HashSet<Integer>[] candidates;
+  protected CandidateList candidates;
+  // Delaunay candidates of the LK engine, built on first use if null
+  protected CandidateList delaunay;
+
+  // run the linkern binary instead of the in-process engine
+  public boolean binaryLK = LinKernighan.useBinary();
+  protected LinKernighan lk;
 
   public Initialization() {
     // generate Delaunay triangulation
@@ -31,6 +39,16 @@ public class Initialization extends TTPHeuristic {
     candidates = GraphHelper.delaunayKNN(ttp, 5);
   }
 
+  /**
+   * initialization on a prebuilt Delaunay candidate list,
+   * shared by the workers of the same instance (read-only)
+   */
+  public Initialization(TTP1Instance ttp, CandidateList delaunay) {
+    this.ttp = ttp;
+    this.delaunay = delaunay;
+    candidates = delaunay.expand(ttp, 5);
+  }
+
 
   // This procedure calculates the objective of solution tour as a sum
   // of distances between cities.
@@ -87,11 +105,10 @@ public class Initialization extends TTPHeuristic {
       tour[i] = i+1;
 
     int s1,s2,tmp;
-    Random generator = new Random();
     for (int i=1; i<10000; i++) {
       do {
-        s1 = generator.nextInt(nbCities);
-        s2 = generator.nextInt(nbCities);
+        s1 = RandGen.nextInt(nbCities);
+        s2 = RandGen.nextInt(nbCities);
       } while (s1==s2 || s1==0 || s2==0);
       // swap cities
       tmp = tour[s1];
@@ -135,7 +152,8 @@ public class Initialization extends TTPHeuristic {
       for (i = 0; i < nbCities - 1; i++) {
         //for (j = i + 1; j < nbCities; j++) {
         int node1 = tour[i] - 1;
-        for (int node2 : candidates[node1]) {
+        for (int p = candidates.start(node1); p < candidates.end(node1); p++) {
+          int node2 = candidates.nodes[p];
           j = itour[node2];
           if (j<=i) continue;
           //Deb.echo("--> "+i+"/"+j);
@@ -182,10 +200,24 @@ public class Initialization extends TTPHeuristic {
 
 
   /**
-   * random tour
-   * + 1 kick using LK
+   * LK tour, a different one on each call
+   * (linkern from a random tour, or the LK engine
+   * from a perturbed greedy tour)
    */
   public int[] rlinkern() {
+    return rlinkern("");
+  }
+
+  /**
+   * same with a given random seed
+   */
+  public int[] rlinkern(int seed) {
+    return rlinkern(""+seed);
+  }
+
+  // with the binary, each call writes its own tour file,
+  // so that several threads can run linkern at the same time
+  private int[] rlinkern(String seed) {
 
     int nbCities = ttp.getNbCities();
     int[] tour = new int[nbCities];
@@ -207,31 +239,37 @@ public class Initialization extends TTPHeuristic {
     //Deb.echo("nb LK kicks: "+nbKicks);
     //if (Thread.currentThread().isInterrupted()) return null;
 
+    if (!binaryLK) {
+      if (lk == null) {
+        lk = delaunay == null ? new LinKernighan(ttp) : new LinKernighan(ttp, delaunay);
+      }
+      // its kicks are cheaper than linkern's
+      lk.nbKicks = Math.max(nbKicks, nbCities / 4);
+      return lk.run(seed.isEmpty() ? RandGen.get().nextLong() : Long.parseLong(seed));
+    }
+
+    File tourFile = null;
+    Process proc = null;
     try {
       // execute linkern program
-      String[] cmd = {"./bins/linkern/rlinkern.sh", fileName, ""+nbKicks};
+      tourFile = File.createTempFile(fileName+"-", ".tour", new File("./bins/linkern"));
+      String[] cmd = {"./bins/linkern/rlinkern.sh", fileName, ""+nbKicks, tourFile.getPath(), seed};
       Runtime runtime = Runtime.getRuntime();
-      Process proc = runtime.exec(cmd);
+      proc = runtime.exec(cmd);
 
       proc.waitFor();
 
       // read output tour
-      File tourFile = new File("./bins/linkern/"+fileName+".tour");
-      BufferedReader br = new BufferedReader(new FileReader(tourFile));
-      String line;
-      br.readLine(); // skip first line
-      int i = 0;
-      while ((line = br.readLine()) != null) {
-        String[] parts = line.split("\\s+");
-        tour[i++] = 1+Integer.parseInt(parts[0]);
-      }
-      tourFile.delete();
-      br.close();
+      tour = Constructive.readLinkernTour(tourFile, nbCities);
 
     } catch (IOException e) {
       e.printStackTrace();
     } catch (InterruptedException e) {
-      e.printStackTrace();
+      // stop linkern and keep the interrupt status for the caller
+      proc.destroy();
+      Thread.currentThread().interrupt();
+    } finally {
+      if (tourFile != null) tourFile.delete();
     }
 
     return tour;
@@ -1,11 +1,11 @@
 package ea;
 
+import ttp.ItemClusters;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
 import utils.Deb;
+import utils.RandGen;
 
-import java.util.ArrayList;
-import java.util.Random;
 import java.util.TreeSet;
 
 /**
@@ -36,11 +36,10 @@ public class MPX2 {
      * PART I: tour
      *==================================*/
     // generate 2 crossover cut points
-    Random gen = new Random();
     int pos1, pos2;
     do {
-      pos1 = gen.nextInt(nbCities-1);
-      pos2 = gen.nextInt(nbCities-1);
+      pos1 = RandGen.nextInt(nbCities-1);
+      pos2 = RandGen.nextInt(nbCities-1);
     } while ( pos2<=pos1 || pos1==0 );
 
 //    pos1=2;pos2=6;
@@ -114,8 +113,7 @@ public class MPX2 {
     // child pick plan
     int[] cpp1 = new int[nbItems];
     // TTP data
-    ArrayList<Integer>[] clusters = ttp.getClusters();
-    int[] weights = ttp.getWeights();
+    ItemClusters clusters = ttp.getClusters();
     double capacity = ttp.getCapacity();
     //for (int i=0; i<nbItems; i++) cpp1[i] = -1;
     int wacc = 0;
@@ -130,12 +128,14 @@ public class MPX2 {
       }
 
       // check only items contained in current city
-      for (int j : clusters[ ct1[i]-1 ]) {
+      int c = ct1[i]-1;
+      for (int p=clusters.start(c); p<clusters.end(c); p++) {
+        int j = clusters.items[p];
 //        Deb.echo( "c: "+ct1[i] + " >> " + (j+1) );
         cpp1[j] = pid==1 ? pp1[j] : pp2[j];
         // if item is picked
         if (cpp1[j] != 0) {
-          wacc += weights[j];
+          wacc += clusters.weights[p];
         }
         // check if capacity is exceeded
         if (wacc > capacity) {
@@ -0,0 +1,100 @@
+package ea;
+
+import ttp.TTPSolution;
+import utils.RandGen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * migration between the islands of a parallel MA
+ *
+ * every interval generations an island sends copies of its elites
+ * to its neighbours in the topology:
+ *   ring   : island i+1
+ *   full   : all other islands
+ *   random : one other island drawn at random
+ *
+ * the exchange is lock-free: island i has one slot per sender, a
+ * sender overwrites its slot with its latest elites (set) and the
+ * receiver empties its slots (getAndSet), elites that were not
+ * received in time are replaced by the newer ones
+ */
+public class Migration {
+
+  public final int nbIslands;
+  public final String topology;
+  // generations between two migrations
+  public final int interval;
+  // elites sent per migration
+  public final int nbMigrants;
+
+  // slot (to, from) holds the elites sent by island from to island to
+  private final AtomicReferenceArray<TTPSolution[]> slots;
+
+
+  public Migration(int nbIslands, String topology, int interval, int nbMigrants) {
+    if (!topology.equals("ring") && !topology.equals("full") && !topology.equals("random")) {
+      throw new IllegalArgumentException("unknown topology: " + topology);
+    }
+    this.nbIslands = nbIslands;
+    this.topology = topology;
+    this.interval = Math.max(1, interval);
+    this.nbMigrants = nbMigrants;
+    this.slots = new AtomicReferenceArray<>(nbIslands * nbIslands);
+  }
+
+
+  // migration at generation nbGen
+  public boolean due(int nbGen) {
+    return nbGen % interval == 0;
+  }
+
+
+  /**
+   * send elites from an island to its neighbours, each
+   * receiver gets its own copies
+   */
+  public void send(int from, TTPSolution[] elites) {
+    if (nbIslands < 2) return;
+
+    switch (topology) {
+      case "ring":
+        post((from + 1) % nbIslands, from, elites);
+        break;
+      case "full":
+        for (int to = 0; to < nbIslands; to++) {
+          if (to != from) post(to, from, elites);
+        }
+        break;
+      case "random":
+        int to = RandGen.nextInt(nbIslands - 1);
+        post(to < from ? to : to + 1, from, elites);
+        break;
+    }
+  }
+
+
+  /**
+   * take the elites sent to an island since its last call
+   */
+  public List<TTPSolution> receive(int to) {
+    List<TTPSolution> immigrants = new ArrayList<>();
+    for (int from = 0; from < nbIslands; from++) {
+      TTPSolution[] elites = slots.getAndSet(to * nbIslands + from, null);
+      if (elites == null) continue;
+      for (TTPSolution s : elites) immigrants.add(s);
+    }
+    return immigrants;
+  }
+
+
+  private void post(int to, int from, TTPSolution[] elites) {
+    TTPSolution[] copies = new TTPSolution[elites.length];
+    for (int i = 0; i < elites.length; i++) {
+      copies[i] = elites[i].clone();
+    }
+    slots.set(to * nbIslands + from, copies);
+  }
+}
@@ -7,7 +7,6 @@ import ttp.TTPSolution;
 import utils.Deb;
 import utils.RandGen;
 
-import java.util.Random;
 import java.util.TreeSet;
 
 /**
@@ -21,12 +20,11 @@ public class Mutation {
   // TODO must be adjusted to [0,n-1]
   public static void twoOpt(int[] t) {
 
-    Random gen = new Random();
     int pos2;
 
     for (int pos1=2; pos1<=t.length; pos1++) {
-      if (Math.random()< Evolution.MUTATION_RATE) {
-        pos2 = gen.nextInt(t.length-1) + 2;
+      if (RandGen.random()< Evolution.MUTATION_RATE) {
+        pos2 = RandGen.nextInt(t.length-1) + 2;
         int pos=pos1+pos2+1;
         for (int i=pos1+1; i<=(pos1+pos2)/2; i++) {
           int tmp = t[i];
@@ -88,12 +86,11 @@ public class Mutation {
   public static TTPSolution randomFlips(TTPSolution sol, double strength, TTP1Instance ttp) {
     TTPSolution copy = sol.clone();
     int[] pp = sol.getPickingPlan();
-    int[] A = ttp.getAvailability();
     int nbBits = (int)strength * pp.length;
     int r;
     for (int i=0; i<nbBits; i++) {
       r = RandGen.randInt(0,pp.length-1);
-      pp[r] = pp[r] != 0 ? 0 : A[r];
+      sol.flip(r, ttp);
     }
     ttp.objective(sol);
     if (sol.wend<0) {
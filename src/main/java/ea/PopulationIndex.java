@@ -0,0 +1,87 @@
+package ea;
+
+import ttp.TTPSolution;
+import utils.HashHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * fingerprint index of the solutions of a population
+ *
+ * solutions are bucketed by their 64-bit fingerprint (HashHelper),
+ * a lookup compares tour and picking plan with the solutions of one
+ * bucket only, so it is exact and does not depend on the population
+ * size. a solution must not be modified while it is indexed
+ */
+public class PopulationIndex {
+
+  private final HashMap<Long, ArrayList<TTPSolution>> buckets = new HashMap<>();
+  private int size;
+
+
+  public PopulationIndex() {
+  }
+
+  // index all members of pop
+  public PopulationIndex(Population pop) {
+    for (TTPSolution s : pop.sol) add(s, HashHelper.of(s));
+  }
+
+
+  public int size() {
+    return size;
+  }
+
+
+  /**
+   * add s with fingerprint h, duplicates are kept
+   */
+  public void add(TTPSolution s, long h) {
+    ArrayList<TTPSolution> bucket = buckets.get(h);
+    if (bucket == null) {
+      bucket = new ArrayList<>(1);
+      buckets.put(h, bucket);
+    }
+    bucket.add(s);
+    size++;
+  }
+
+
+  /**
+   * remove the indexed object s (not an equal one)
+   *
+   * @return false if s is not indexed under h
+   */
+  public boolean remove(TTPSolution s, long h) {
+    ArrayList<TTPSolution> bucket = buckets.get(h);
+    if (bucket == null) return false;
+    for (int i = 0; i < bucket.size(); i++) {
+      if (bucket.get(i) == s) {
+        bucket.remove(i);
+        if (bucket.isEmpty()) buckets.remove(h);
+        size--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * is a solution with the same tour and
+   * picking plan as s (fingerprint h) indexed
+   */
+  public boolean contains(TTPSolution s, long h) {
+    ArrayList<TTPSolution> bucket = buckets.get(h);
+    if (bucket == null) return false;
+    for (TTPSolution t : bucket) {
+      if (t.equals(s)) return true;
+    }
+    return false;
+  }
+
+  public boolean contains(TTPSolution s) {
+    return contains(s, HashHelper.of(s));
+  }
+}
@@ -3,6 +3,7 @@ package ea;
 import solver.Evolution;
 import ttp.TTPSolution;
 import utils.Deb;
+import utils.RandGen;
 
 /**
  * Created by kyu on 11/4/15.
@@ -20,7 +21,7 @@ public class Selection {
     // candidate tour and add it
     int randomId;
     for (int i = 0; i < Evolution.TOURNAMENT_SIZE; i++) {
-      randomId = (int) (Math.random() * Evolution.POP_SIZE);
+      randomId = RandGen.nextInt(Evolution.POP_SIZE);
       tournament.sol[i] = pop.sol[randomId];
     }
     // Get the fittest tour
@@ -30,7 +31,7 @@ public class Selection {
     tournament = new Population(Evolution.TOURNAMENT_SIZE);
     for (int i = 0; i < Evolution.TOURNAMENT_SIZE; i++) {
       do {
-        randomId = (int) (Math.random() * Evolution.POP_SIZE);
+        randomId = RandGen.nextInt(Evolution.POP_SIZE);
       } while (pop.sol[randomId].ob==parents[0].ob);
       tournament.sol[i] = pop.sol[randomId];
     }
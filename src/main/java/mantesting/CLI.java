@@ -17,7 +17,10 @@ import solver.J2B;
 import solver.JNB;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.Deb;
+import utils.GraphHelper;
+import utils.RandGen;
 import solver.*;
 
 public class CLI {
@@ -50,46 +53,60 @@ public class CLI {
 
     // TTP instance
     final TTP1Instance ttp = new TTP1Instance(spl[0]+"-ttp/"+inst);
-    int nbItems = ttp.getNbItems();
+
+    // options: threads=N runs N parallel starts (local searches)
+    // or N initialization workers (ma2b), seed=S seeds the run,
+    // islands=K, topology=ring|full|random and migration=G
+    // (generations) configure ma2b-islands
+    int nbThreads = 1;
+    int seed = (int) System.currentTimeMillis();
+    String[] islandOpts = new String[3];
+    for (int i = 4; i < args.length; i++) {
+      String[] opt = args[i].split("=", 2);
+      switch (opt[0]) {
+        case "threads":
+          nbThreads = Integer.parseInt(opt[1]);
+          break;
+        case "seed":
+          seed = Integer.parseInt(opt[1]);
+          break;
+        case "islands":
+          islandOpts[0] = opt[1];
+          break;
+        case "topology":
+          islandOpts[1] = opt[1];
+          break;
+        case "migration":
+          islandOpts[2] = opt[1];
+          break;
+        default:
+          Deb.echo("unknown option: " + args[i]);
+      }
+    }
+    // seed the run's random numbers
+    RandGen.setSeed(seed);
 
     /* algorithm to run */
     final SearchHeuristic algo;
-    switch (algoName) {
-
-      case "cs2b":
-        algo = new CS2B(ttp);
-      break;
-
-      case "cs2sa":
-        algo = new CS2SA(ttp);
-
-        // tuned using irace package
-//        ((CS2SA)algo).trialFactor = CS2SA.generateTFLinFit(nbItems);
-//        ((CS2SA)algo).alpha = .9484;
-//        ((CS2SA)algo).T0 = 3587;
-//        Deb.echo(((CS2SA)algo).trialFactor + " // ");
-      break;
-
-      case "cs2sar":
-        algo = new CS2SAR(ttp);
-      break;
-
-
-      case "ma2b":
-        algo = new MA2B(ttp);
-      break;
-
-      case "j2b":
-        algo = new J2B(ttp);
-      break;
-
-      case "jnb":
-        algo = new JNB(ttp);
-      break;
-
-      default:
-        algo = new CS2SA(ttp);
-      break;
+    if (nbThreads > 1 && !isEvolution(algoName)) {
+      // multi-start: one local search per thread,
+      // a single candidate list for all of them
+      CandidateList candidates = GraphHelper.delaunay(ttp);
+      algo = new MultiStart(ttp, () -> newLocalSearch(algoName, ttp, candidates),
+        nbThreads, seed, candidates);
+    }
+    else {
+      algo = newAlgo(algoName, ttp);
+      if (nbThreads > 1) {
+        // parallel population initialization
+        ((Evolution) algo).nbThreads = nbThreads;
+      }
+    }
+    if (algo instanceof MA2BIslands) {
+      MA2BIslands islands = (MA2BIslands) algo;
+      if (islandOpts[0] != null) islands.nbIslands = Integer.parseInt(islandOpts[0]);
+      if (islandOpts[1] != null) islands.topology = islandOpts[1];
+      if (islandOpts[2] != null) islands.migrationInterval = Integer.parseInt(islandOpts[2]);
     }
 
 
@@ -119,15 +136,31 @@ public class CLI {
       }
     };
 
+    // best-so-far registry, updated by the search on every improvement
+    final Incumbent incumbent = new Incumbent();
+    algo.setIncumbent(incumbent);
+
     // my TTP runnable
     TTPRunnable ttprun = new TTPRunnable();
-    ExecutorService executor = Executors.newFixedThreadPool(4);
+    // daemon threads: the JVM does not wait for a search
+    // that keeps running after the runtime limit
+    ExecutorService executor = Executors.newFixedThreadPool(4, r -> {
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
     Future<?> future = executor.submit(ttprun);
     executor.shutdown();  // reject all further submissions
 
+    // final result
+    String resultLine = null;
+    TTPSolution sx = null;
+
     // limit execution time to 600 seconds
     try {
       future.get(runtimeLimit, TimeUnit.SECONDS);  // wait X seconds to finish
+      resultLine = ttprun.resultLine;
+      sx = ttprun.sx;
     } catch (InterruptedException e) {
       System.out.println("job was interrupted");
     } catch (ExecutionException e) {
@@ -137,21 +170,30 @@ public class CLI {
       System.out.println("/!\\ Timeout");
     }
 
-    // wait for execution to be done
-    try {
-      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-    } catch (InterruptedException e) {
-      e.printStackTrace();
+    // search did not return in time: report the best-so-far
+    // solution and the time it was found at, without waiting
+    // for the search thread to unwind
+    if (resultLine == null) {
+      Incumbent.Entry best = incumbent.get();
+      if (best == null) {
+        Deb.echo(inst + " no solution found");
+        return;
+      }
+      sx = best.getSolution();
+      resultLine = inst + " " + Math.round(best.ob) + " " + (best.time/1000.0);
     }
 
     // print results
-    Deb.echo(ttprun.resultLine);
+    Deb.echo(resultLine);
+    if (algo instanceof Evolution && ((Evolution) algo).getInitTime() > 0) {
+      Deb.echo("initialization: " + ((Evolution) algo).getInitTime()/1000.0 + " s");
+    }
 
     // log results into text file
     try {
       File file = new File(outputFile);
       if (!file.exists()) file.createNewFile();
-      Files.write(Paths.get(outputFile), (ttprun.resultLine+"\n").getBytes(), StandardOpenOption.APPEND);
+      Files.write(Paths.get(outputFile), (resultLine+"\n").getBytes(), StandardOpenOption.APPEND);
     } catch (IOException e) {
       e.printStackTrace();
     }
@@ -160,11 +202,70 @@ public class CLI {
     try {
       String currentTime = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
       PrintWriter pw = new PrintWriter("./output/solutions/"+inst+"-"+algoName+"-"+currentTime+".txt");
-      pw.println(ttprun.sx);
+      pw.println(sx);
       pw.close();
     } catch (FileNotFoundException e) {
       e.printStackTrace();
     }
 
   }
+
+
+  // evolutionary algorithms, any other name is a local search
+  private static boolean isEvolution(String algoName) {
+    return algoName.equals("ma2b") || algoName.equals("ma2b-islands");
+  }
+
+
+  /**
+   * algorithm by name
+   */
+  private static SearchHeuristic newAlgo(String algoName, TTP1Instance ttp) {
+
+    switch (algoName) {
+
+      case "ma2b":
+        return new MA2B(ttp);
+
+      case "ma2b-islands":
+        return new MA2BIslands(ttp);
+
+      default:
+        return newLocalSearch(algoName, ttp, GraphHelper.delaunay(ttp));
+    }
+  }
+
+
+  /**
+   * local search by name, on a prebuilt candidate list
+   */
+  private static LocalSearch newLocalSearch(String algoName, TTP1Instance ttp,
+                                            CandidateList candidates) {
+
+    switch (algoName) {
+
+      case "cs2b":
+        return new CS2B(ttp, candidates);
+
+      case "cs2sa":
+        // tuned using irace package
+//        ((CS2SA)algo).trialFactor = CS2SA.generateTFLinFit(nbItems);
+//        ((CS2SA)algo).alpha = .9484;
+//        ((CS2SA)algo).T0 = 3587;
+//        Deb.echo(((CS2SA)algo).trialFactor + " // ");
+        return new CS2SA(ttp, candidates);
+
+      case "cs2sar":
+        return new CS2SAR(ttp, candidates);
+
+      case "j2b":
+        return new J2B(ttp, candidates);
+
+      case "jnb":
+        return new JNB(ttp, candidates);
+
+      default:
+        return new CS2SA(ttp, candidates);
+    }
+  }
 }
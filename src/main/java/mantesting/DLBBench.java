@@ -0,0 +1,40 @@
+package mantesting;
+
+import solver.CS2B;
+import solver.Constructive;
+import solver.LocalSearch;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import utils.Deb;
+
+/**
+ * time to 2-opt local optimum: full rescans vs. don't-look bits
+ *
+ * usage: DLBBench <tsp>-ttp/<instance>.ttp [ff|bf] [tour: l|g|r|s]
+ * both searches start from the same packed tour (linkern by default)
+ */
+public class DLBBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    boolean firstfit = args.length < 2 || args[1].equals("ff");
+    String tour = args.length > 2 ? args[2] : "l";
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    LocalSearch ls = new CS2B(ttp);
+    if (firstfit) ls.firstfit();
+    else ls.bestfit();
+    TTPSolution s0 = ls.insertT2(new Constructive(ttp).generate(tour + "z"));
+    Deb.echo(inst + (firstfit ? " (first fit)" : " (best fit)") + ": start ob=" + String.format("%.0f", s0.ob));
+
+    for (int mode = 0; mode < 2; mode++) {
+      ls.dontLookBits = mode == 1;
+      long t0 = System.nanoTime();
+      TTPSolution sol = ls.fast2opt(s0.clone());
+      long t1 = System.nanoTime();
+      Deb.echo(String.format("%s : ob=%.0f  %8.0f ms",
+        mode == 0 ? "full scans    " : "don't-look bits", sol.ob, (t1 - t0) / 1e6));
+    }
+  }
+}
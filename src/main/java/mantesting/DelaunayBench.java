@@ -0,0 +1,124 @@
+package mantesting;
+
+import utils.Delaunay;
+import utils.GraphHelper;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation start-up time:
+ * in-process triangulation vs. external dct program
+ *
+ * usage: DelaunayBench [tsp names...]
+ * reads ./database/TSP_instances/<name>.tsp
+ */
+public class DelaunayBench {
+
+  public static void main(String[] args) throws IOException {
+
+    String[] names = args.length > 0 ? args : new String[] {
+      "a280", "dsj1000", "d2103", "pcb3038", "fnl4461", "pla7397",
+      "rl11849", "usa13509", "brd14051", "d15112", "d18512",
+      "pla33810", "pla85900"
+    };
+
+    System.out.println(String.format("%-10s %7s %8s %10s %10s %s",
+      "instance", "n", "edges", "java(ms)", "dct(ms)", "same"));
+
+    for (String name : names) {
+      File f = new File("./database/TSP_instances/" + name + ".tsp");
+      if (!f.exists()) {
+        System.out.println(String.format("%-10s (missing)", name));
+        continue;
+      }
+      double[][] xy = readTSP(f);
+
+      // warm up, then best of 3
+      Delaunay.edges(xy[0], xy[1]);
+      long tJava = Long.MAX_VALUE;
+      int[][] ej = null;
+      for (int r = 0; r < 3; r++) {
+        long t0 = System.nanoTime();
+        ej = Delaunay.edges(xy[0], xy[1]);
+        tJava = Math.min(tJava, System.nanoTime() - t0);
+      }
+
+      long t0 = System.nanoTime();
+      int[][] ed = GraphHelper.dctEdges(xy[0], xy[1]);
+      long tDct = System.nanoTime() - t0;
+
+      String same = ed == null ? "n/a" : compare(ej, ed);
+      System.out.println(String.format("%-10s %7d %8d %10.1f %10.1f %s",
+        name, xy[0].length, ej[0].length, tJava / 1e6, tDct / 1e6, same));
+    }
+  }
+
+  // coordinates {xs, ys} of a TSPLIB file
+  private static double[][] readTSP(File f) throws IOException {
+
+    ArrayList<double[]> pts = new ArrayList<>();
+    BufferedReader br = new BufferedReader(new FileReader(f));
+    String line;
+    boolean coords = false;
+    while ((line = br.readLine()) != null) {
+      line = line.trim();
+      if (line.startsWith("NODE_COORD_SECTION")) {
+        coords = true;
+        continue;
+      }
+      if (!coords) continue;
+      if (line.isEmpty() || line.startsWith("EOF")) break;
+      String[] parts = line.split("\\s+");
+      pts.add(new double[] {Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+    }
+    br.close();
+
+    double[][] xy = new double[2][pts.size()];
+    for (int i = 0; i < pts.size(); i++) {
+      xy[0][i] = pts.get(i)[0];
+      xy[1][i] = pts.get(i)[1];
+    }
+    return xy;
+  }
+
+  // compare two undirected edge sets
+  private static String compare(int[][] a, int[][] b) {
+    long[] ka = keys(a), kb = keys(b);
+    int common = 0, i = 0, j = 0;
+    while (i < ka.length && j < kb.length) {
+      if (ka[i] == kb[j]) {
+        common++;
+        i++;
+        j++;
+      }
+      else if (ka[i] < kb[j]) i++;
+      else j++;
+    }
+    if (common == ka.length && common == kb.length) return "yes";
+    return "no (" + (ka.length - common) + " java-only, " + (kb.length - common) + " dct-only)";
+  }
+
+  private static long[] keys(int[][] e) {
+    long[] k = new long[e[0].length];
+    int len = 0;
+    for (int p = 0; p < k.length; p++) {
+      int u = Math.min(e[0][p], e[1][p]), v = Math.max(e[0][p], e[1][p]);
+      if (u == v) continue;
+      k[len++] = ((long) u << 32) | v;
+    }
+    k = Arrays.copyOf(k, len);
+    Arrays.sort(k);
+
+    // drop duplicates
+    int m = 0;
+    for (int p = 0; p < len; p++) {
+      if (p == 0 || k[p] != k[p-1]) k[m++] = k[p];
+    }
+    return Arrays.copyOf(k, m);
+  }
+}
@@ -0,0 +1,83 @@
+package mantesting;
+
+import solver.Constructive;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import ttp.TimeTree;
+import utils.Deb;
+
+import java.util.Random;
+
+/**
+ * evaluations per second of the KRP bit-flip move
+ *
+ * usage: EvalBench <tsp>-ttp/<instance>.ttp [seconds]
+ * compares the suffix loop calling distFor on every leg,
+ * the suffix loop reading the solution's leg lengths,
+ * the time tree, and the full objective function
+ */
+public class EvalBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    TTPSolution sol = new Constructive(ttp).generate("lg");
+    ttp.objective(sol);
+    Deb.echo(inst + ": " + ttp.getNbCities() + " cities, " + ttp.getNbItems() + " items");
+
+    TimeTree tree = new TimeTree(ttp);
+    tree.build(sol);
+
+    for (int mode = 0; mode < 4; mode++) {
+      Random rng = new Random(1);
+      long nbEvals = 0;
+      double sink = 0;
+      long start = System.nanoTime();
+      long end = start + (long) (seconds * 1e9);
+      long now;
+
+      do {
+        for (int b = 0; b < 64; b++) {
+          int k = rng.nextInt(ttp.getNbItems());
+          sink += mode == 3 ? objective(ttp, sol) : flip(ttp, sol, tree, k, mode);
+        }
+        nbEvals += 64;
+      } while ((now = System.nanoTime()) < end);
+
+      String name = mode == 0 ? "distFor loop" : mode == 1 ? "leg lengths " : mode == 2 ? "time tree   " : "objective   ";
+      Deb.echo(String.format("%s : %12.0f evals/s  (%.0f)", name, nbEvals / ((now - start) / 1e9), sink / nbEvals));
+    }
+  }
+
+  // final time after flipping item k
+  private static double flip(TTP1Instance ttp, TTPSolution sol, TimeTree tree, int k, int mode) {
+
+    int nbCities = ttp.getNbCities();
+    double maxSpeed = ttp.getMaxSpeed();
+    double C = (maxSpeed - ttp.getMinSpeed()) / ttp.getCapacity();
+    int[] tour = sol.getTour();
+
+    int origBF = sol.mapCI[ttp.getAvailability()[k] - 1];
+    long deltaW = sol.getPickingPlan()[k] == 0 ? ttp.weightOf(k) : -ttp.weightOf(k);
+
+    if (mode == 2) {
+      return sol.ft + tree.delta(origBF, deltaW);
+    }
+
+    double ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
+    for (int r = origBF; r < nbCities; r++) {
+      long wc = sol.weightAcc[r] + deltaW;
+      long d = mode == 0 ? ttp.distFor(tour[r] - 1, tour[(r + 1) % nbCities] - 1) : sol.legDist[r];
+      ft += d / (maxSpeed - wc * C);
+    }
+    return ft;
+  }
+
+  private static double objective(TTP1Instance ttp, TTPSolution sol) {
+    ttp.objective(sol);
+    return sol.ft;
+  }
+}
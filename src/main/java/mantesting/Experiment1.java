@@ -4,7 +4,6 @@ import solver.*;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
 import utils.Deb;
-import utils.Quicksort;
 import utils.TwoOptHelper;
 
 import java.io.File;
@@ -0,0 +1,40 @@
+package mantesting;
+
+import ea.Initialization;
+import ttp.TTP1Instance;
+import utils.Deb;
+
+/**
+ * LK tours: linkern binary vs. in-process engine
+ *
+ * usage: LKBench <tsp>-ttp/<instance>.ttp [runs]
+ * generates `runs` tours with Initialization.rlinkern (same
+ * number of kicks) with each engine, reports the mean tour
+ * length and the mean wall time per tour
+ */
+public class LKBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    Initialization init = new Initialization(ttp);
+    Deb.echo(inst + ": " + ttp.getNbCities() + " cities");
+
+    for (int mode = 0; mode < 2; mode++) {
+      init.binaryLK = mode == 0;
+      double sumLength = 0;
+      long sumTime = 0;
+      for (int r = 0; r < runs; r++) {
+        long t0 = System.nanoTime();
+        int[] tour = init.rlinkern(r + 1);
+        sumTime += System.nanoTime() - t0;
+        sumLength += init.evaluateTSP(tour);
+      }
+      Deb.echo(String.format("%s : length %.0f  %8.0f ms",
+        mode == 0 ? "linkern binary" : "LK engine     ", sumLength / runs, sumTime / 1e6 / runs));
+    }
+  }
+}
@@ -0,0 +1,45 @@
+package mantesting;
+
+import solver.Constructive;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import utils.Deb;
+
+/**
+ * full objective evaluations per second
+ *
+ * usage: ObjectiveBench <tsp>-ttp/<instance>.ttp [seconds] [rounds]
+ * evaluates a greedy solution (linkern tour, greedy picking plan)
+ * again and again, the first round warms up the JIT, the best
+ * round is reported
+ */
+public class ObjectiveBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "pla33810-ttp/pla33810_n338090_uncorr_10.ttp";
+    double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 2;
+    int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    TTPSolution sol = new Constructive(ttp).generate("lg");
+    ttp.objective(sol);
+    Deb.echo(inst + ": " + ttp.getNbCities() + " cities, " + ttp.getNbItems() + " items, ob=" +
+      String.format("%.0f", sol.ob));
+
+    double best = 0;
+    for (int r = 0; r <= rounds; r++) {
+      long nbEvals = 0;
+      long t0 = System.nanoTime();
+      long stop = t0 + (long) (seconds * 1e9);
+      long t;
+      do {
+        ttp.objective(sol);
+        nbEvals++;
+      } while ((t = System.nanoTime()) < stop);
+      double rate = nbEvals / ((t - t0) / 1e9);
+      if (r > 0) best = Math.max(best, rate);
+    }
+    Deb.echo(String.format("objective : %.1f evaluations/s (%.3f ms each)", best, 1e3 / best));
+  }
+}
@@ -0,0 +1,44 @@
+package mantesting;
+
+import solver.CS2B;
+import solver.Constructive;
+import solver.LocalSearch;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import utils.Deb;
+
+/**
+ * CS2B with 2-opt alone vs. 2-opt followed by or-opt
+ *
+ * usage: OrOptBench <tsp>-ttp/<instance>.ttp [ff|bf] [tour: l|g|r|s]
+ * both searches start from the same packed tour (linkern by default),
+ * reports the final objective and the objective gained per second
+ */
+public class OrOptBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    boolean firstfit = args.length < 2 || args[1].equals("ff");
+    String tour = args.length > 2 ? args[2] : "l";
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    LocalSearch ls = new CS2B(ttp);
+    if (firstfit) ls.firstfit();
+    else ls.bestfit();
+    TTPSolution s0 = ls.insertT2(new Constructive(ttp).generate(tour + "z"));
+    ttp.objective(s0);
+    Deb.echo(inst + (firstfit ? " (first fit)" : " (best fit)") + ": start ob=" + String.format("%.0f", s0.ob));
+
+    for (int mode = 0; mode < 2; mode++) {
+      ls.orOptMoves = mode == 1;
+      ls.setS0(s0.clone());
+      long t0 = System.nanoTime();
+      TTPSolution sol = ls.search();
+      long t1 = System.nanoTime();
+      double sec = (t1 - t0) / 1e9;
+      Deb.echo(String.format("%s : ob=%.0f  %8.0f ms  %10.1f ob/s",
+        mode == 0 ? "2-opt       " : "2-opt+or-opt", sol.ob, sec * 1e3, (sol.ob - s0.ob) / sec));
+    }
+  }
+}
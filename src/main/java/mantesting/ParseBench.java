@@ -0,0 +1,114 @@
+package mantesting;
+
+import utils.ConfigHelper;
+import utils.Tokenizer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * .ttp load time: line reader + regex split vs. byte tokenizer
+ *
+ * usage: ParseBench <tsp>-ttp/<instance>.ttp [repetitions]
+ * both parsers read the coordinates and items sections,
+ * the best time over the repetitions is reported
+ */
+public class ParseBench {
+
+  public static void main(String[] args) throws IOException {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    int reps = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    File file = new File(ConfigHelper.getProperty("ttpdata") + inst);
+
+    long tLines = Long.MAX_VALUE, tBytes = Long.MAX_VALUE;
+    double[][] a = null, b = null;
+    for (int r = 0; r < reps; r++) {
+      long t0 = System.nanoTime();
+      a = parseLines(file);
+      long t1 = System.nanoTime();
+      b = parseBytes(file);
+      long t2 = System.nanoTime();
+      tLines = Math.min(tLines, t1 - t0);
+      tBytes = Math.min(tBytes, t2 - t1);
+    }
+
+    System.out.println(inst + " (" + file.length() / 1024 + " KB)");
+    System.out.println(String.format("readLine+split : %8.1f ms", tLines / 1e6));
+    System.out.println(String.format("tokenizer      : %8.1f ms", tBytes / 1e6));
+    System.out.println("same data      : " + Arrays.deepEquals(a, b));
+  }
+
+  // {xs, ys, profits, weights, availability}
+  private static double[][] parseLines(File file) throws IOException {
+
+    int nbCities = 0, nbItems = 0;
+    double[][] data = new double[5][];
+    BufferedReader br = new BufferedReader(new FileReader(file));
+    String line;
+    while ((line = br.readLine()) != null) {
+      if (line.startsWith("DIMENSION")) {
+        nbCities = Integer.parseInt(line.substring(line.indexOf(":")+1).replaceAll("\\s+",""));
+      }
+      if (line.startsWith("NUMBER OF ITEMS")) {
+        nbItems = Integer.parseInt(line.substring(line.indexOf(":")+1).replaceAll("\\s+",""));
+      }
+      if (line.startsWith("NODE_COORD_SECTION")) {
+        data[0] = new double[nbCities];
+        data[1] = new double[nbCities];
+        for (int i = 0; i < nbCities; i++) {
+          String[] parts = br.readLine().split("\\s+");
+          data[0][i] = Double.parseDouble(parts[1]);
+          data[1][i] = Double.parseDouble(parts[2]);
+        }
+      }
+      if (line.startsWith("ITEMS SECTION")) {
+        for (int k = 2; k < 5; k++) data[k] = new double[nbItems];
+        for (int i = 0; i < nbItems; i++) {
+          String[] parts = br.readLine().split("\\s+");
+          for (int k = 2; k < 5; k++) data[k][i] = Integer.parseInt(parts[k-1]);
+        }
+      }
+    }
+    br.close();
+    return data;
+  }
+
+  private static double[][] parseBytes(File file) throws IOException {
+
+    int nbCities = 0, nbItems = 0;
+    double[][] data = new double[5][];
+    Tokenizer tk = Tokenizer.map(file);
+    while (tk.hasMore()) {
+      if (tk.startsWith("DIMENSION")) {
+        nbCities = Integer.parseInt(tk.value());
+      }
+      else if (tk.startsWith("NUMBER OF ITEMS")) {
+        nbItems = Integer.parseInt(tk.value());
+      }
+      else if (tk.startsWith("NODE_COORD_SECTION")) {
+        tk.skipLine();
+        data[0] = new double[nbCities];
+        data[1] = new double[nbCities];
+        for (int i = 0; i < nbCities; i++) {
+          tk.nextInt();
+          data[0][i] = tk.nextDouble();
+          data[1][i] = tk.nextDouble();
+        }
+      }
+      else if (tk.startsWith("ITEMS SECTION")) {
+        tk.skipLine();
+        for (int k = 2; k < 5; k++) data[k] = new double[nbItems];
+        for (int i = 0; i < nbItems; i++) {
+          tk.nextInt();
+          for (int k = 2; k < 5; k++) data[k][i] = tk.nextInt();
+        }
+      }
+      tk.skipLine();
+    }
+    return data;
+  }
+}
@@ -0,0 +1,50 @@
+package mantesting;
+
+import utils.Deb;
+import utils.IndexSort;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * item score sorting: IndexSort vs. a plain double[] sort
+ *
+ * usage: SortBench [n] [reps]
+ * n defaults to 338000 (items of the largest instances), distinct
+ * and heavily tied keys, best time of reps runs
+ */
+public class SortBench {
+
+  public static void main(String[] args) {
+
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 338000;
+    int reps = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+    SplittableRandom rand = new SplittableRandom(1);
+    double[] distinct = new double[n];
+    double[] tied = new double[n];
+    for (int i = 0; i < n; i++) {
+      distinct[i] = rand.nextDouble() * 1000;
+      tied[i] = rand.nextInt(100);
+    }
+
+    for (int mode = 0; mode < 2; mode++) {
+      double[] keys = mode == 0 ? distinct : tied;
+      long tSort = Long.MAX_VALUE, tTop = Long.MAX_VALUE, tPlain = Long.MAX_VALUE;
+      for (int r = 0; r < reps; r++) {
+        long t0 = System.nanoTime();
+        IndexSort.sortDescending(keys);
+        long t1 = System.nanoTime();
+        IndexSort.topK(keys, n / 100);
+        long t2 = System.nanoTime();
+        Arrays.sort(keys.clone());
+        long t3 = System.nanoTime();
+        tSort = Math.min(tSort, t1 - t0);
+        tTop = Math.min(tTop, t2 - t1);
+        tPlain = Math.min(tPlain, t3 - t2);
+      }
+      Deb.echo(String.format("n=%d %s keys: sortDescending %.1f ms, topK(1%%) %.1f ms, Arrays.sort (no indices) %.1f ms",
+        n, mode == 0 ? "distinct" : "tied", tSort / 1e6, tTop / 1e6, tPlain / 1e6));
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package mantesting;
+
+import solver.CS2B;
+import solver.Constructive;
+import solver.LocalSearch;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import ttp.TimeTree;
+import utils.CandidateList;
+import utils.Deb;
+import utils.GraphHelper;
+
+/**
+ * 2-opt move evaluation: position loop vs. time tree
+ *
+ * usage: TwoOptBench <tsp>-ttp/<instance>.ttp [repetitions]
+ * scores every Delaunay candidate move (i,j) of a packed
+ * linkern tour with both evaluators, reports the largest
+ * difference and the number of evaluated moves per second
+ */
+public class TwoOptBench {
+
+  public static void main(String[] args) {
+
+    String inst = args.length > 0 ? args[0] : "a280-ttp/a280_n2790_uncorr_10.ttp";
+    int reps = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    TTP1Instance ttp = new TTP1Instance(inst);
+    LocalSearch ls = new CS2B(ttp);
+    TTPSolution sol = ls.insertT2(new Constructive(ttp).generate("lz"));
+    ttp.objective(sol);
+
+    TimeTree tree = new TimeTree(ttp);
+    tree.build(sol);
+
+    // candidate moves
+    CandidateList candidates = GraphHelper.delaunay(ttp);
+    int nbCities = ttp.getNbCities();
+    int[] tour = sol.getTour();
+    int nbMoves = 0;
+    long sumLength = 0;
+    int[] is = new int[candidates.nodes.length];
+    int[] js = new int[candidates.nodes.length];
+    for (int i = 1; i < nbCities - 1; i++) {
+      for (int p = candidates.start(tour[i] - 1); p < candidates.end(tour[i] - 1); p++) {
+        int j = sol.mapCI[candidates.nodes[p]];
+        if (j < i) continue;
+        is[nbMoves] = i;
+        js[nbMoves++] = j;
+        sumLength += j - i;
+      }
+    }
+
+    // exactness
+    double maxAbs = 0, maxRel = 0;
+    for (int m = 0; m < nbMoves; m++) {
+      double a = ls.delta2optLoop(sol, is[m], js[m]);
+      double b = ls.delta2opt(sol, tree, is[m], js[m]);
+      maxAbs = Math.max(maxAbs, Math.abs(a - b));
+      maxRel = Math.max(maxRel, Math.abs(a - b) / sol.ft);
+    }
+
+    // throughput
+    long tLoop = Long.MAX_VALUE, tTree = Long.MAX_VALUE;
+    double sink = 0;
+    for (int r = 0; r < reps; r++) {
+      long t0 = System.nanoTime();
+      for (int m = 0; m < nbMoves; m++) sink += ls.delta2optLoop(sol, is[m], js[m]);
+      long t1 = System.nanoTime();
+      for (int m = 0; m < nbMoves; m++) sink += ls.delta2opt(sol, tree, is[m], js[m]);
+      long t2 = System.nanoTime();
+      tLoop = Math.min(tLoop, t1 - t0);
+      tTree = Math.min(tTree, t2 - t1);
+    }
+
+    Deb.echo(inst + ": " + nbMoves + " moves, mean segment " + sumLength / Math.max(1, nbMoves) + " (" + (sink > 0 ? "+" : "-") + ")");
+    Deb.echo(String.format("position loop : %12.0f moves/s", nbMoves / (tLoop / 1e9)));
+    Deb.echo(String.format("time tree     : %12.0f moves/s", nbMoves / (tTree / 1e9)));
+    Deb.echo(String.format("max |diff|    : %.3g (%.3g of ft)", maxAbs, maxRel));
+  }
+}
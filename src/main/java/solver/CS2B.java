@@ -3,6 +3,7 @@ package solver;
 import ttp.TTP1Instance;
 
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.Deb;
 
 
@@ -19,6 +20,10 @@ public class CS2B extends LocalSearch {
     super(ttp);
   }
 
+  public CS2B(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp, candidates);
+  }
+
 
 
   @Override
@@ -27,11 +32,14 @@ public class CS2B extends LocalSearch {
     //==============================================
     // generate initial solution
     //==============================================
-    Constructive construct = new Constructive(ttp);
-    TTPSolution s0 = construct.generate("lz");
-    // pre-process the knapsack
-    // insert and eliminate items
-    s0 = insertT2(s0);
+    if (s0==null) {
+      Constructive construct = new Constructive(ttp, candidates);
+      s0 = construct.generate("lz");
+      // pre-process the knapsack
+      // insert and eliminate items
+      s0 = insertT2(s0);
+    }
+    ttp.objective(s0);
     //==============================================
 
     // copy initial solution into improved solution
@@ -53,6 +61,9 @@ public class CS2B extends LocalSearch {
       // 2-opt heuristic on TSKP
       sol = fast2opt(sol);
 
+      // segment relocations on TSKP
+      if (orOptMoves) sol = orOpt(sol);
+
       // simple bit-flip on KRP
       sol = lsBitFlip(sol);
 
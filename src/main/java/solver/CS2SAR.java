@@ -3,6 +3,8 @@ package solver;
 import ea.Initialization;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import ttp.TimeTree;
+import utils.CandidateList;
 import utils.Deb;
 import utils.RandGen;
 
@@ -36,6 +38,12 @@ public class CS2SAR extends LocalSearch {
     SAConfig();
   }
 
+  public CS2SAR(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp, candidates);
+    // use default config
+    SAConfig();
+  }
+
 
   // SA params config
   // default config
@@ -59,8 +67,10 @@ public class CS2SAR extends LocalSearch {
    */
   public TTPSolution simulatedAnnealing(TTPSolution sol) {
 
-    // copy initial solution into improved solution
-    TTPSolution sBest = sol.clone();
+    // best objective, flips since the best
+    // solution are logged to restore it
+    double obBest = sol.ob;
+    sol.checkpoint();
 
     // TTP data
     int nbCities = ttp.getNbCities();
@@ -76,6 +86,12 @@ public class CS2SAR extends LocalSearch {
     int[] tour = sol.getTour();
     int[] pickingPlan = sol.getPickingPlan();
 
+    // tour leg lengths
+    long[] legs = sol.legDist;
+
+    // suffix times evaluation
+    TimeTree tree = exactKRP ? null : timeTree(sol);
+
     // delta parameters
     int deltaP, deltaW;
 
@@ -126,13 +142,18 @@ public class CS2SAR extends LocalSearch {
         // handle velocity constraint
         // index where Bit-Flip happened
         origBF = sol.mapCI[A[k] - 1];
-        // starting time
-        ft = origBF == 0 ? .0 : sol.timeAcc[origBF - 1];
-        // recalculate velocities from bit-flip city
-        // to recover objective value
-        for (r = origBF; r < nbCities; r++) {
-          wc = sol.weightAcc[r] + deltaW;
-          ft += ttp.distFor(tour[r] - 1, tour[(r + 1) % nbCities] - 1) / (maxSpeed - wc * C);
+        if (tree != null) {
+          ft = sol.ft + tree.delta(origBF, deltaW);
+        }
+        else {
+          // starting time
+          ft = origBF == 0 ? .0 : sol.timeAcc[origBF - 1];
+          // recalculate velocities from bit-flip city
+          // to recover objective value
+          for (r = origBF; r < nbCities; r++) {
+            wc = sol.weightAcc[r] + deltaW;
+            ft += legs[r] / (maxSpeed - wc * C);
+          }
         }
         // compute recovered objective value
         G = fp - ft * R;
@@ -141,7 +162,7 @@ public class CS2SAR extends LocalSearch {
         // update if improvement or
         // Boltzmann condition satisfied
         //=====================================
-        double mu = Math.random();
+        double mu = RandGen.random();
         double energy_gap = G - GBest;
         boolean acceptance = energy_gap > 0 || Math.exp(energy_gap / T) > mu;
         if (acceptance) {
@@ -149,7 +170,7 @@ public class CS2SAR extends LocalSearch {
           GBest = G;
 
           // bit-flip
-          pickingPlan[k] = pickingPlan[k] != 0 ? 0 : A[k];
+          sol.flip(k, ttp);
 
           //===========================================================
           // recover accumulation vectors
@@ -163,20 +184,28 @@ public class CS2SAR extends LocalSearch {
           }
           fp = sol.fp + deltaP;
           origBF = sol.mapCI[A[k] - 1];
-          ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
-          for (r = origBF; r < nbCities; r++) {
-            // recalculate velocities from bit-flip city
-            wc = sol.weightAcc[r] + deltaW;
-            ft += ttp.distFor(tour[r] - 1, tour[(r + 1) % nbCities] - 1) / (maxSpeed - wc * C);
-            // recover wacc and tacc
-            sol.weightAcc[r] = wc;
-            sol.timeAcc[r] = ft;
+          if (tree != null) {
+            // same state as the trial: reuse its time,
+            // history vectors are recovered at the end
+            tree.shift(origBF, deltaW);
+            sol.wend -= deltaW;
+          }
+          else {
+            ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
+            for (r = origBF; r < nbCities; r++) {
+              // recalculate velocities from bit-flip city
+              wc = sol.weightAcc[r] + deltaW;
+              ft += legs[r] / (maxSpeed - wc * C);
+              // recover wacc and tacc
+              sol.weightAcc[r] = wc;
+              sol.timeAcc[r] = ft;
+            }
+            sol.wend = capacity - sol.weightAcc[nbCities - 1];
           }
           G = fp - ft * R;
           sol.ob = G;
           sol.fp = fp;
           sol.ft = ft;
-          sol.wend = capacity - sol.weightAcc[nbCities - 1];
           //===========================================================
 
         }
@@ -184,8 +213,10 @@ public class CS2SAR extends LocalSearch {
       }
 
       // update best if improvement
-      if (sol.ob > sBest.ob) {
-        sBest = sol.clone();
+      if (sol.ob > obBest) {
+        obBest = sol.ob;
+        sol.checkpoint();
+        publish(sol);
       }
 
       if (this.debug) {
@@ -200,10 +231,13 @@ public class CS2SAR extends LocalSearch {
     } while (T > T_abs);
 
 
+    // undo the flips since the best solution,
     // in order to recover all history vector
-    ttp.objective(sBest);
+    sol.rollback(ttp);
+    sol.dropCheckpoint();
+    ttp.updateObjective(sol);
 
-    return sBest;
+    return sol;
   }
 
 
@@ -213,8 +247,8 @@ public class CS2SAR extends LocalSearch {
     //===============================================
     // generate initial solution
     //===============================================
-    Constructive construct = new Constructive(ttp);
-    Initialization init = new Initialization(ttp);
+    Constructive construct = new Constructive(ttp, candidates);
+    Initialization init = new Initialization(ttp, candidates);
     if (s0==null) {
       // use Lin-Kernighan to initialize the tour
       s0 = new TTPSolution(
@@ -234,6 +268,7 @@ public class CS2SAR extends LocalSearch {
       }
     }
     ttp.objective(s0);
+    publish(s0);
     if (this.debug) {
       Deb.echo("STARTING SOL >> " + s0.ob);
     }
@@ -242,7 +277,8 @@ public class CS2SAR extends LocalSearch {
     // copy initial solution into improved solution
     TTPSolution sol = s0.clone();
 
-    // best found solution
+    // best found solution, copied into
+    // the same buffer on each improvement
     TTPSolution sBest = sol.clone();
 
     // number of iterations
@@ -265,7 +301,7 @@ public class CS2SAR extends LocalSearch {
       // tag idle step
       if (sol.ob > sBest.ob) {
         idleSteps = 0;
-        sBest = sol.clone();
+        sol.copyInto(sBest);
       }
       else {
         idleSteps++;
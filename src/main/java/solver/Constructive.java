@@ -3,17 +3,28 @@ package solver;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Random;
 
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.ConfigHelper;
 import utils.Deb;
-import utils.Quicksort;
+import utils.LinKernighan;
+import utils.IndexSort;
 import utils.RandGen;
+import utils.Tokenizer;
 
 public class Constructive extends TTPHeuristic {
+
+  // run the linkern/kdtree binaries instead of the in-process engine
+  public boolean binaryLK = LinKernighan.useBinary();
+
+  // time limit (s) of the engine when the database has no tour
+  public double linkernTimeLimit = 10;
+
+  // Delaunay candidates of the LK engine (null: triangulate)
+  protected CandidateList candidates;
+  private LinKernighan lk;
   
   public Constructive() {
     super();
@@ -22,6 +33,11 @@ public class Constructive extends TTPHeuristic {
   public Constructive(TTP1Instance ttp) {
     super(ttp);
   }
+
+  public Constructive(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp);
+    this.candidates = candidates;
+  }
   
   
   /**
@@ -121,18 +137,15 @@ public class Constructive extends TTPHeuristic {
   public int[] greedyTour() {
     
     /* TTP data */
-    long[][] D = ttp.getDist();
     int m = ttp.getNbCities();
     int[] tour = new int[m];
     
     /* the tour generated using greedy algorithm */
     ArrayList<Integer> li = new ArrayList<Integer>();
-    long[] raw;
     long vMin;
     int iMin;
     li.add(0, 1);
     for (int i=1;i<m;i++) {
-      raw = D[i];
       iMin = 0;
       vMin = Long.MAX_VALUE;
       for (int j=1;j<m;j++) {
@@ -140,8 +153,9 @@ public class Constructive extends TTPHeuristic {
           continue;
         }
         
-        if (raw[j]<vMin) {
-          vMin = raw[j];
+        long d = ttp.distFor(i, j);
+        if (d<vMin) {
+          vMin = d;
           iMin = j+1;
         }
       }
@@ -169,7 +183,7 @@ public class Constructive extends TTPHeuristic {
     for (int i=0; i<tour.length-1; i++) {
       li.add(i, i+2);
     }
-    Collections.shuffle(li);
+    RandGen.shuffle(li);
     
     tour[0] = 1;
     for (int i=1; i<tour.length; i++) {
@@ -183,7 +197,8 @@ public class Constructive extends TTPHeuristic {
   
   /**
    * use Lin-Kernighan TSP tour
-   * uses hardcoded tours
+   * uses hardcoded tours, computed with the
+   * LK engine (linkernTimeLimit) if the instance has none
    */
   public int[] linkernTour() {
     int nbCities = ttp.getNbCities();
@@ -195,25 +210,23 @@ public class Constructive extends TTPHeuristic {
     //Deb.echo(dirName + "/" + fileName);
     
     File file = new File(dirName + "/" + fileName);
-    BufferedReader br = null;
-    
+    if (!file.exists()) {
+      LinKernighan lk = engine();
+      lk.timeLimit = linkernTimeLimit;
+      lk.nbKicks = nbCities;
+      return lk.run(RandGen.get().nextLong());
+    }
+
     try {
-      br = new BufferedReader(new FileReader(file));
-      String line;
-      
+      Tokenizer tk = Tokenizer.map(file);
+
       // scan tour
-      while ((line = br.readLine()) != null) {
-        
-        if (line.startsWith("TOUR_SECTION")) {
-          
-          for (int j=0; j<nbCities; j++) {
-            line = br.readLine();
-            tour[j] = Integer.parseInt(line);
-          }
+      if (tk.skipTo("TOUR_SECTION")) {
+        tk.skipLine();
+        for (int j=0; j<nbCities; j++) {
+          tour[j] = tk.nextInt();
         }
-      } // end while
-      
-      br.close();
+      }
     } catch (IOException ex) {
       ex.printStackTrace();
     }
@@ -222,6 +235,32 @@ public class Constructive extends TTPHeuristic {
   }
 
 
+  // LK engine shared by the tour constructions, built once
+  private LinKernighan engine() {
+    if (lk == null) {
+      lk = candidates == null ? new LinKernighan(ttp) : new LinKernighan(ttp, candidates);
+    }
+    return lk;
+  }
+
+
+  /**
+   * read a tour written by linkern (-o option):
+   * a header line, then one edge "a b length" per line
+   */
+  public static int[] readLinkernTour(File tourFile, int nbCities) throws IOException {
+
+    int[] tour = new int[nbCities];
+    Tokenizer tk = Tokenizer.read(tourFile);
+    tk.skipLine(); // skip first line
+    for (int i=0; i<nbCities; i++) {
+      tour[i] = 1+tk.nextInt();
+      tk.skipLine();
+    }
+    return tour;
+  }
+
+
   /**
    * chained-LK
    * runtime restricted
@@ -231,13 +270,20 @@ public class Constructive extends TTPHeuristic {
     int nbCities = ttp.getNbCities();
     int[] tour = new int[nbCities];
 
+    if (!binaryLK) {
+      LinKernighan lk = engine();
+      lk.timeLimit = 1 + RandGen.random();
+      lk.nbKicks = RandGen.randInt(1, nbCities);
+      return lk.run(RandGen.get().nextLong());
+    }
+
     String fileName = ttp.getName().replaceAll("-.+", "");
 
     try {
 
       // execute linkern program
       //Deb.echo(RandGen.randInt(1, nbCities));
-      String[] cmd = {"./bins/linkern/linkern.sh", fileName, "" + (1+Math.random()), "" + RandGen.randInt(1, nbCities)};
+      String[] cmd = {"./bins/linkern/linkern.sh", fileName, "" + (1+RandGen.random()), "" + RandGen.randInt(1, nbCities)};
       Runtime runtime = Runtime.getRuntime();
       Process proc = runtime.exec(cmd);
 
@@ -245,17 +291,9 @@ public class Constructive extends TTPHeuristic {
 
       // read output tour
       File tourFile = new File("./bins/linkern/"+fileName+".tour");
-      BufferedReader br = new BufferedReader(new FileReader(tourFile));
-      String line;
-      br.readLine(); // skip first line
-      int i = 0;
-      while ((line = br.readLine()) != null) {
-        String[] parts = line.split("\\s+");
-        tour[i++] = 1+Integer.parseInt(parts[0]);
-      }
+      tour = readLinkernTour(tourFile, nbCities);
       //Deb.echo(tour);
       tourFile.delete();
-      br.close();
 
       //Deb.echo("OK? "+tourFile.delete());
     } catch (IOException e) {
@@ -277,6 +315,11 @@ public class Constructive extends TTPHeuristic {
     int nbCities = ttp.getNbCities();
     int[] tour = new int[nbCities];
 
+    // greedy matching, close to Boruvka's tours
+    if (!binaryLK) {
+      return engine().greedyTour();
+    }
+
     String name = ttp.getName().replaceAll("-.+", "");
     String fileName = ConfigHelper.getProperty("tspdata") + name + ".tsp";
     Deb.echo(fileName);
@@ -293,17 +336,12 @@ public class Constructive extends TTPHeuristic {
 
       // read output tour
       File tourFile = new File("./bins/kdtree/out.tour");
-      BufferedReader br = new BufferedReader(new FileReader(tourFile));
-      String line;
-      br.readLine(); // skip first line
-      int i = 0;
-      while ((line = br.readLine()) != null) {
-        String[] parts = line.split("\\s+");
-        for (String str:parts)
-          tour[i++] = 1 + Integer.parseInt(str);
+      Tokenizer tk = Tokenizer.read(tourFile);
+      tk.skipLine(); // skip first line
+      for (int i=0; i<nbCities; i++) {
+        tour[i] = 1 + tk.nextInt();
       }
       tourFile.delete();
-      br.close();
 
     } catch (IOException e) {
       e.printStackTrace();
@@ -353,19 +391,20 @@ public class Constructive extends TTPHeuristic {
     long maxCapacity = capacity/h;
     
     // item scores
-    Double[] score = new Double[n];
+    double[] score = new double[n];
     
+    int minWeight = Integer.MAX_VALUE;
     for (int k=0; k<n; k++) {
       score[k] = ttp.profitOf(k) / (ttp.weightOf(k) + .0);
+      minWeight = Math.min(minWeight, ttp.weightOf(k));
     }
     
-    // sort
-    Quicksort<Double> qs = new Quicksort(score);
-    qs.sort();
-    
-    int[] si = qs.getIndices();
+    // sort, the first item that does not fit ends the
+    // loop: at most maxCapacity/minWeight+1 are visited
+    long nbVisited = maxCapacity / Math.max(1, minWeight) + 1;
+    int[] si = IndexSort.topK(score, (int) Math.min(n, nbVisited));
     int wc = 0;
-    for (int k=0; k<n; k++) {
+    for (int k=0; k<si.length; k++) {
       int i = si[k];
       int wi = ttp.weightOf(i);
       
@@ -412,7 +451,7 @@ public class Constructive extends TTPHeuristic {
     for (int k=0; k<n; k++) {
       li.add(k, k);
     }
-    Collections.shuffle(li);
+    RandGen.shuffle(li);
     
     //P.echo(li);
     //pp[0] = 1;
@@ -456,7 +495,6 @@ public class Constructive extends TTPHeuristic {
   public TTPSolution SH2() {
     
     // get TTP data
-    long[][] D = ttp.getDist();
     int[] A = ttp.getAvailability();
     double maxSpeed = ttp.getMaxSpeed();
     double minSpeed = ttp.getMinSpeed();
@@ -491,7 +529,7 @@ public class Constructive extends TTPHeuristic {
     double tik;
     
     // item scores
-    Double[] score = new Double[n];
+    double[] score = new double[n];
     
     // total time with no items collected
     double t_ = s.ft;
@@ -522,8 +560,8 @@ public class Constructive extends TTPHeuristic {
         int c1 = x[r]-1;
         int c2 = x[(r+1)%m]-1;
         
-        di += D[c1][c2];
-        tik += D[c1][c2] / (maxSpeed-iw*C);
+        di += ttp.distFor(c1, c2);
+        tik += ttp.distFor(c1, c2) / (maxSpeed-iw*C);
       }
       
       score[k] = ip - R*tik;
@@ -532,9 +570,7 @@ public class Constructive extends TTPHeuristic {
       //P.echo(k+" : "+u[k]);
     }
     
-    Quicksort<Double> qs = new Quicksort<Double>(score);
-    qs.sort();
-    int[] si = qs.getIndices();
+    int[] si = IndexSort.sortDescending(score);
     int wc = 0;
     for (int k=0; k<n; k++) {
       int i = si[k];
@@ -33,4 +33,14 @@ public abstract class Evolution extends SearchHeuristic {
 
   protected Population pop;
 
+  // worker threads (population initialization)
+  public int nbThreads = Runtime.getRuntime().availableProcessors();
+
+  // wall time of the population initialization (ms)
+  protected long initTime;
+
+  public long getInitTime() {
+    return initTime;
+  }
+
 }
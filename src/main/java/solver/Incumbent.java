@@ -0,0 +1,92 @@
+package solver;
+
+import ttp.SolutionSnapshot;
+import ttp.TTPInstance;
+import ttp.TTPSolution;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * best-so-far registry
+ *
+ * shared between a search and the thread that runs it: the search
+ * publishes every improvement, the caller can read the incumbent at
+ * any time, even while search() is still running (runtime limit)
+ *
+ * publishing is lock-free, a snapshot of the solution is swapped in
+ * by compare-and-set only if it beats the current incumbent. the
+ * snapshot is compact (SolutionSnapshot): tour and picking plan
+ * bits, the history vectors are recomputed when it is read back
+ */
+public class Incumbent {
+
+  /**
+   * immutable record of a published solution
+   */
+  public static final class Entry {
+
+    public final SolutionSnapshot snapshot;
+    public final double ob;
+    // ms elapsed since the registry was created
+    public final long time;
+
+    private Entry(SolutionSnapshot snapshot, long time) {
+      this.snapshot = snapshot;
+      this.ob = snapshot.ob;
+      this.time = time;
+    }
+
+    // new copy of the solution
+    public TTPSolution getSolution() {
+      return snapshot.toSolution();
+    }
+  }
+
+  private final AtomicReference<Entry> best;
+  private final long startTime;
+
+  public Incumbent() {
+    this.best = new AtomicReference<>();
+    this.startTime = System.currentTimeMillis();
+  }
+
+
+  /**
+   * publish a candidate solution (sol.ob must be up to date)
+   *
+   * the solution is copied only when it improves the incumbent,
+   * so calling this after every move costs one comparison
+   *
+   * @return true if the candidate became the new incumbent
+   */
+  public boolean publish(TTPSolution sol, TTPInstance ttp) {
+
+    Entry cur = best.get();
+    if (cur != null && sol.ob <= cur.ob) return false;
+
+    Entry e = new Entry(new SolutionSnapshot(sol, ttp), System.currentTimeMillis() - startTime);
+    while (!best.compareAndSet(cur, e)) {
+      cur = best.get();
+      if (cur != null && e.ob <= cur.ob) return false;
+    }
+    return true;
+  }
+
+
+  /**
+   * current incumbent, null if nothing was published yet
+   */
+  public Entry get() {
+    return best.get();
+  }
+
+  public TTPSolution getSolution() {
+    Entry e = best.get();
+    return e == null ? null : e.getSolution();
+  }
+
+  public double getOb() {
+    Entry e = best.get();
+    return e == null ? Double.NEGATIVE_INFINITY : e.ob;
+  }
+}
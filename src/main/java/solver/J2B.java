@@ -5,6 +5,7 @@ import solver.Constructive;
 import solver.LocalSearch;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.Deb;
 import utils.TwoOptHelper;
 
@@ -26,6 +27,10 @@ public class J2B extends LocalSearch {
   public J2B(TTP1Instance ttp) {
     super(ttp);
   }
+
+  public J2B(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp, candidates);
+  }
   
 
   
@@ -36,13 +41,13 @@ public class J2B extends LocalSearch {
     //===============================================
     // generate initial solution
     //===============================================
-    Constructive construct = new Constructive(ttp);
+    Constructive construct = new Constructive(ttp, candidates);
 
 //    s0 = new TTPSolution(
 //      init.rlinkern(),
 //      construct.zerosPickingPlan()
 //    );
-    s0 = construct.generate("lg");
+    if (s0==null) s0 = construct.generate("lg");
 //    s0 = insertAndEliminate(s0);
 
     //ttp.objective(s0);
@@ -51,6 +56,7 @@ public class J2B extends LocalSearch {
 
     // calculate initial objective value
     ttp.objective(s0);
+    publish(s0);
 //    Deb.echo(s0.ob);
     // copy initial solution into improved solution
     TTPSolution sol = s0.clone();//, sBest = s0.clone();
@@ -58,7 +64,6 @@ public class J2B extends LocalSearch {
     // TTP data
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
-    long[][] D = ttp.getDist();
     int[] A = ttp.getAvailability();
     double maxSpeed = ttp.getMaxSpeed();
     double minSpeed = ttp.getMinSpeed();
@@ -121,13 +126,13 @@ public class J2B extends LocalSearch {
             int c1 = TwoOptHelper.get2optValue(q, tour, i, j)-1;
             int c2 = TwoOptHelper.get2optValue((q+1)%nbCities, tour, i, j)-1;
             
-            deltaT = -sol.timeRec[q] + D[c1][c2]/(maxSpeed-wc*C);
+            deltaT = -sol.timeRec[q] + ttp.distFor(c1, c2)/(maxSpeed-wc*C);
             
             // accumulate final time
             ftd = ftd + deltaT;
             
             // fix time accumulator
-            ftacc = Math.round( ftacc + D[c1][c2]/(maxSpeed-wc*C) );
+            ftacc = Math.round( ftacc + ttp.distFor(c1, c2)/(maxSpeed-wc*C) );
             
             tacc[q] = ftacc; // need to continue 'till the end...
             wacc[q] = wc;
@@ -194,7 +199,7 @@ public class J2B extends LocalSearch {
               int c1 = TwoOptHelper.get2optValue(r, tour, i, j)-1;
               int c2 = TwoOptHelper.get2optValue((r+1)%nbCities, tour, i, j)-1; // todo: avoid using the % operator...
               
-              ft += D[c1][c2] / (maxSpeed-wc*C);
+              ft += ttp.distFor(c1, c2) / (maxSpeed-wc*C);
             }
             // remove delta
             sol.weightRec[origBF] -= deltaW;
@@ -226,10 +231,10 @@ public class J2B extends LocalSearch {
       if (improv) {
         
         // 2opt invert
-        TwoOptHelper.do2opt(tour, iBest, jBest);
+        TwoOptHelper.do2opt(ttp, sol, iBest, jBest);
         
         // bit-flip
-        pickingPlan[kBest] = pickingPlan[kBest]!=0 ? 0 : A[kBest];
+        sol.flip(kBest, ttp);
         
         ttp.objective(sol);
         
@@ -239,6 +244,7 @@ public class J2B extends LocalSearch {
           sol.ft = ft;
           sol.fp = fp;
         }
+        publish(sol);
 
         // debug print
         if (this.debug) {
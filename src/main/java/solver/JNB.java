@@ -4,6 +4,7 @@ import solver.Constructive;
 import solver.LocalSearch;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.Deb;
 import utils.SwapHelper;
 
@@ -24,6 +25,10 @@ public class JNB extends LocalSearch {
   public JNB(TTP1Instance ttp) {
     super(ttp);
   }
+
+  public JNB(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp, candidates);
+  }
   
 
   
@@ -33,11 +38,12 @@ public class JNB extends LocalSearch {
     //===============================================
     // generate initial solution
     //===============================================
-    Constructive construct = new Constructive(ttp);
-    s0 = construct.generate("lr");
+    Constructive construct = new Constructive(ttp, candidates);
+    if (s0==null) s0 = construct.generate("lr");
 
     // calculate initial objective value
     ttp.objective(s0);
+    publish(s0);
     
     // copy initial solution into improved solution
     TTPSolution sol = s0.clone();//, sBest = s0.clone();
@@ -45,7 +51,6 @@ public class JNB extends LocalSearch {
     // TTP data
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
-    long[][] D = ttp.getDist();
     int[] A = ttp.getAvailability();
     double maxSpeed = ttp.getMaxSpeed();
     double minSpeed = ttp.getMinSpeed();
@@ -118,8 +123,8 @@ public class JNB extends LocalSearch {
         v2i= maxSpeed - newWA*C;
         
         // compute objective
-        deltaT = - D[c1][c2]/v1 - D[c2][c3]/v2  - D[c3][c4]/v3
-                 + D[c1][c3]/v1 + D[c3][c2]/v2i + D[c2][c4]/v3;
+        deltaT = - ttp.distFor(c1, c2)/v1 - ttp.distFor(c2, c3)/v2  - ttp.distFor(c3, c4)/v3
+                 + ttp.distFor(c1, c3)/v1 + ttp.distFor(c3, c2)/v2i + ttp.distFor(c2, c4)/v3;
         ft = Math.round(sol.ft + deltaT); // remove ?
         
         /* fix time accumulator */
@@ -127,8 +132,8 @@ public class JNB extends LocalSearch {
 //          tacc[q] = sol.timeAcc[q];
 //        }
         if (i-2>-1) tacc[i-2] = sol.timeAcc[i-2]; // @todo sufficient ?
-        tacc[i-1] = Math.round(sol.timeAcc[i-1] - D[c1][c2]/v1 + D[c1][c3]/v1);
-        tacc[i] = Math.round(tacc[i-1] + D[c2][c3]/v2i);
+        tacc[i-1] = Math.round(sol.timeAcc[i-1] - ttp.distFor(c1, c2)/v1 + ttp.distFor(c1, c3)/v1);
+        tacc[i] = Math.round(tacc[i-1] + ttp.distFor(c2, c3)/v2i);
         for (int r=i+1; r<nbCities; r++) {
           tacc[r] = Math.round(sol.timeAcc[r] + deltaT);
         }
@@ -181,7 +186,7 @@ public class JNB extends LocalSearch {
           // recalculate velocities from bit-flip city
           for (int r=refBF; r<nbCities; r++) {
             wc = sol.weightAcc[r] + deltaW;
-            ft += D[tour[r]-1][tour[(r+1)%nbCities]-1] / (maxSpeed-wc*C);
+            ft += ttp.distFor(tour[r]-1, tour[(r+1)%nbCities]-1) / (maxSpeed-wc*C);
           }
           
           /* compute objective value */
@@ -212,7 +217,7 @@ public class JNB extends LocalSearch {
         SwapHelper.doSwap(tour, iBest);
         
         // bit-flip
-        pickingPlan[kBest] = pickingPlan[kBest]!=0 ? 0 : A[kBest];
+        sol.flip(kBest, ttp);
         
         ttp.objective(sol);
         
@@ -222,6 +227,7 @@ public class JNB extends LocalSearch {
           sol.ft = ft;
           sol.fp = fp;
         }
+        publish(sol);
         
         // debug print
         if (this.debug) {
@@ -2,10 +2,12 @@ package solver;
 
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import ttp.TimeTree;
 import utils.*;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * local search algorithms
@@ -16,7 +18,10 @@ import java.util.HashSet;
 public abstract class LocalSearch extends SearchHeuristic {
 
   protected TTPSolution s0;
-  protected HashSet<Integer>[] candidates;
+  protected CandidateList candidates;
+
+  // travel time tree used by the KRP searches
+  protected TimeTree timeTree;
 
   // initial solution
   public void setS0(TTPSolution s0) {
@@ -30,6 +35,50 @@ public abstract class LocalSearch extends SearchHeuristic {
    * first fit or best fit
    */
   public boolean firstfit;
+
+  /**
+   * evaluate bit-flips with the exact suffix loop
+   * instead of the time tree (validation)
+   */
+  public boolean exactKRP;
+
+  /**
+   * evaluate 2-opt moves with the exact position loop
+   * instead of the time tree (validation)
+   */
+  public boolean exactTSKP;
+
+  // reversed segments shorter than this are summed directly
+  protected static final int SHORT_SEGMENT = 64;
+
+  /**
+   * best fit 2-opt applies all the non-overlapping
+   * improving moves of a scan (see applyBatch)
+   */
+  public boolean batchMoves;
+
+  /**
+   * 2-opt with don't-look bits: only the tour positions
+   * touched since they were last searched are rescanned
+   * (see dlb2opt)
+   */
+  public boolean dontLookBits;
+
+  /**
+   * a position inside a reversed segment is searched again when
+   * its accumulated weight changes by more than this share of
+   * the capacity
+   */
+  public double dlbWeightRatio = .05;
+
+  /**
+   * CS2B and CS2SA follow each 2-opt search
+   * with an or-opt search (see orOpt)
+   */
+  public boolean orOptMoves;
+
+  // longest segment relocated by or-opt
+  protected static final int OR_OPT_LENGTH = 3;
   
   
   public LocalSearch() {
@@ -39,12 +88,19 @@ public abstract class LocalSearch extends SearchHeuristic {
   public LocalSearch(TTP1Instance ttp) {
     super(ttp);
     // generate Delaunay triangulation
-    if (! System.getProperty("os.name").contains("Windows")) {
-//      candidates = GraphHelper.delaunayKNN(ttp,10);
-      candidates = GraphHelper.delaunay(ttp);
+//    candidates = GraphHelper.delaunayKNN(ttp,10);
+    candidates = GraphHelper.delaunay(ttp);
 
-      if (debug) Deb.echo("Delaunay triangulation: OK");
-    }
+    if (debug) Deb.echo("Delaunay triangulation: OK");
+  }
+
+  /**
+   * local search on a prebuilt candidate list, shared by the
+   * searches of the same instance (read-only)
+   */
+  public LocalSearch(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp);
+    this.candidates = candidates;
   }
   
 
@@ -52,17 +108,13 @@ public abstract class LocalSearch extends SearchHeuristic {
   public void setTTP(TTP1Instance ttp) {
     super.setTTP(ttp);
     // generate Delaunay triangulation
-    if (! System.getProperty("os.name").contains("Windows")) {
 //    candidates = GraphHelper.delaunayKNN(ttp,5);
-      candidates = GraphHelper.delaunay(ttp);
-    }
+    candidates = GraphHelper.delaunay(ttp);
   }
 
   public void setDelaunayLevel(int L) {
     // generate Delaunay triangulation
-    if (! System.getProperty("os.name").contains("Windows")) {
-      candidates = GraphHelper.delaunayKNN(ttp, L);
-    }
+    candidates = GraphHelper.delaunayKNN(ttp, L);
   }
 
 
@@ -80,6 +132,19 @@ public abstract class LocalSearch extends SearchHeuristic {
   public void bestfit() {
     firstfit = false;
   }
+
+
+  /**
+   * load the current tour of an evaluated solution
+   * into the time tree
+   */
+  protected TimeTree timeTree(TTPSolution sol) {
+    if (timeTree == null) {
+      timeTree = new TimeTree(ttp);
+    }
+    timeTree.build(sol);
+    return timeTree;
+  }
   
   @Override
   public String getName() {
@@ -104,7 +169,6 @@ public abstract class LocalSearch extends SearchHeuristic {
     // TTP data
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
-    long[][] D = ttp.getDist();
     int[] A = ttp.getAvailability();
     double maxSpeed = ttp.getMaxSpeed();
     double minSpeed = ttp.getMinSpeed();
@@ -134,7 +198,7 @@ public abstract class LocalSearch extends SearchHeuristic {
     }
 
     // sort item according to score
-    Double[] scores = new Double[nbItems];
+    double[] scores = new double[nbItems];
     int[] insertedItems = new int[nbItems];
 
     for (k = 0; k < nbItems; k++) {
@@ -144,17 +208,16 @@ public abstract class LocalSearch extends SearchHeuristic {
       t1 = L[origBF] * (1 / (maxSpeed - C * ttp.weightOf(k)) - 1 / maxSpeed);
       // affect score to item
       scores[k] = (ttp.profitOf(k) - R * t1) / ttp.weightOf(k);
-      // empty the knapsack
-      pickingPlan[k] = 0;
     }
 
+    // empty the knapsack
+    sol.clearPickingPlan();
+
     // evaluate solution after emptying knapsack
     ttp.objective(sol);
 
     // sort items according to score
-    Quicksort<Double> qs = new Quicksort<>(scores);
-    qs.sort();
-    int[] sortedItems = qs.getIndices();
+    int[] sortedItems = IndexSort.sortDescending(scores);
 
     // loop & insert items
     int nbInserts = 0;
@@ -177,7 +240,7 @@ public abstract class LocalSearch extends SearchHeuristic {
       t2 = L[origBF] * (1 / (maxSpeed - C * (wCurr + ttp.weightOf(k))) - 1 / (maxSpeed - C * wCurr));
       if (ttp.profitOf(k) > R * t2) {
         v2++;
-        pickingPlan[k] = A[k];
+        sol.flip(k, ttp);
         wCurr += ttp.weightOf(k);
         insertedItems[nbInserts++] = k;
       }
@@ -185,6 +248,7 @@ public abstract class LocalSearch extends SearchHeuristic {
 
     // evaluate solution & update vectors
     ttp.objective(sol);
+    publish(sol);
 
     // debug msg
     if (this.debug) {
@@ -212,7 +276,6 @@ public abstract class LocalSearch extends SearchHeuristic {
     // TTP data
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
-    long[][] D = ttp.getDist();
     int[] A = ttp.getAvailability();
     double maxSpeed = ttp.getMaxSpeed();
     double minSpeed = ttp.getMinSpeed();
@@ -224,6 +287,9 @@ public abstract class LocalSearch extends SearchHeuristic {
     int[] tour = sol.getTour();
     int[] pickingPlan = sol.getPickingPlan();
 
+    // tour leg lengths
+    long[] legs = sol.legDist;
+
     // neighbor solution
     int origBF;
     int i, k, itr;
@@ -242,7 +308,7 @@ public abstract class LocalSearch extends SearchHeuristic {
     }
 
     // sort item according to score
-    Double[] scores = new Double[nbItems];
+    double[] scores = new double[nbItems];
     int[] insertedItems = new int[nbItems];
 
     for (k = 0; k < nbItems; k++) {
@@ -252,17 +318,16 @@ public abstract class LocalSearch extends SearchHeuristic {
       t1 = L[origBF]*(1/(maxSpeed-C*ttp.weightOf(k)) - 1/maxSpeed);
       // affect score to item
       scores[k] = (ttp.profitOf(k)-R*t1) / ttp.weightOf(k);
-      // empty the knapsack
-      pickingPlan[k] = 0;
     }
 
+    // empty the knapsack
+    sol.clearPickingPlan();
+
     // evaluate solution after emptying knapsack
     ttp.objective(sol);
 
     // sort items according to score
-    Quicksort<Double> qs = new Quicksort<>(scores);
-    qs.sort();
-    int[] sortedItems = qs.getIndices();
+    int[] sortedItems = IndexSort.sortDescending(scores);
 
     // loop & insert items
     int nbInserts = 0;
@@ -285,7 +350,7 @@ public abstract class LocalSearch extends SearchHeuristic {
       t2 = L[origBF] * (1/(maxSpeed-C*(wCurr+ttp.weightOf(k))) - 1/(maxSpeed-C*wCurr));
       if (ttp.profitOf(k) > R*t2) {
         v2++;
-        pickingPlan[k] = A[k];
+        sol.flip(k, ttp);
         wCurr += ttp.weightOf(k);
         insertedItems[nbInserts++] = k;
       }
@@ -299,7 +364,7 @@ public abstract class LocalSearch extends SearchHeuristic {
             ( (a * (L[0] - L[origBF]) + b1) * (a * L[0] + b2) )
         );
         if (ttp.profitOf(k) > R*t3) {v3++;
-          pickingPlan[k] = A[k];
+          sol.flip(k, ttp);
           wCurr += ttp.weightOf(k);
           insertedItems[nbInserts++] = k;
         }
@@ -358,7 +423,7 @@ public abstract class LocalSearch extends SearchHeuristic {
       // recalculate velocities from bit-flip city
       for (r = origBF; r < nbCities; r++) {
         wc = sol.weightAcc[r] - ttp.weightOf(k);;
-        ft += ttp.distFor(tour[r]-1, tour[(r + 1) % nbCities]-1) / (maxSpeed - wc * C);
+        ft += legs[r] / (maxSpeed - wc * C);
       }
 
       G = Math.round(fp - ft * R);
@@ -378,16 +443,17 @@ public abstract class LocalSearch extends SearchHeuristic {
     if (improved) {
 
       // bit-flip
-      pickingPlan[kBest] = 0;
+      sol.flip(kBest, ttp);
 
       // evaluate & update vectors
-      ttp.objective(sol);
+      ttp.updateObjective(sol);
 
       // debug msg
       if (this.debug) {
         Deb.echo(">> item elimination: best=" + sol.ob);
       }
     }
+    publish(sol);
 
     return sol;
   }
@@ -401,13 +467,11 @@ public abstract class LocalSearch extends SearchHeuristic {
    */
   public TTPSolution fast2opt(TTPSolution sol) {
 
+    if (dontLookBits) return dlb2opt(sol);
+
     // TTP data
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
-    double maxSpeed = ttp.getMaxSpeed();
-    double minSpeed = ttp.getMinSpeed();
-    long capacity = ttp.getCapacity();
-    double C = (maxSpeed - minSpeed) / capacity;
 
     // initial solution data
     int[] tour;
@@ -423,12 +487,21 @@ public abstract class LocalSearch extends SearchHeuristic {
     int iBest=0, jBest=0;
     double ftBest = sol.ft;
 
+    // reversed segment times
+    TimeTree tree = exactTSKP ? null : timeTree(sol);
+
     // neighbor solution
     double ft;
-    long wc;
-    int i, j, c1, c2, q;
+    int i, j;
     int nbIter = 0;
 
+    // improving moves of a scan (batch mode)
+    boolean batch = batchMoves && !firstfit;
+    int nbMoves = 0;
+    int[] movesI = new int[batch ? 64 : 0];
+    int[] movesJ = new int[movesI.length];
+    double[] movesDelta = new double[movesI.length];
+
     // current tour
     tour = sol.getTour();
 
@@ -445,6 +518,7 @@ public abstract class LocalSearch extends SearchHeuristic {
     do {
       improved = false;
       nbIter++;
+      nbMoves = 0;
 
       // cleanup and stop execution if interrupted
       if (Thread.currentThread().isInterrupted()) break;
@@ -452,25 +526,28 @@ public abstract class LocalSearch extends SearchHeuristic {
       // fast 2-opt
       for (i = 1; i < nbCities - 1; i++) {
         int node1 = tour[i] - 1;
-        for (int node2 : candidates[node1]) {
+        for (int p = candidates.start(node1); p < candidates.end(node1); p++) {
+          int node2 = candidates.nodes[p];
           j = sol.mapCI[node2];
-          //if (j<=i) continue;
+          if (j < i) continue; // null move
 
           // calculate final time with partial delta
-          ft = sol.ft;
-          wc = i - 2 < 0 ? 0 : sol.weightAcc[i - 2]; // fix index...
-          deltaT = 0;
-          for (q = i - 1; q <= j; q++) {
-
-            wc += TwoOptHelper.get2optValue(q, sol.weightRec, i, j);
-            c1 = TwoOptHelper.get2optValue(q, tour, i, j) - 1;
-            c2 = TwoOptHelper.get2optValue((q + 1) % nbCities, tour, i, j) - 1;
-
-            deltaT += -sol.timeRec[q] + ttp.distFor(c1,c2) / (maxSpeed - wc * C);
+          deltaT = tree != null ? delta2opt(sol, tree, i, j) : delta2optLoop(sol, i, j);
+
+          // collect improving moves
+          if (batch && deltaT < threshold) {
+            if (nbMoves == movesI.length) {
+              movesI = Arrays.copyOf(movesI, 2 * nbMoves);
+              movesJ = Arrays.copyOf(movesJ, 2 * nbMoves);
+              movesDelta = Arrays.copyOf(movesDelta, 2 * nbMoves);
+            }
+            movesI[nbMoves] = i;
+            movesJ[nbMoves] = j;
+            movesDelta[nbMoves++] = deltaT;
           }
 
           // retrieve neighbor's final time
-          ft = ft + deltaT;
+          ft = sol.ft + deltaT;
 
           // update best
           if (ft - ftBest < threshold) { // soft condition
@@ -493,11 +570,20 @@ public abstract class LocalSearch extends SearchHeuristic {
       //===================================
       if (improved) {
 
-        // apply 2-opt move
-        TwoOptHelper.do2opt(tour, iBest, jBest);
+        // apply 2-opt move(s)
+        if (batch) {
+          int nbApplied = applyBatch(sol, tree, movesI, movesJ, movesDelta, nbMoves, threshold);
+          if (debug) Deb.echo(">> batch: " + nbApplied + "/" + nbMoves + " moves applied");
+        }
+        else {
+          TwoOptHelper.do2opt(ttp, sol, iBest, jBest);
+        }
 
         // evaluate & update vectors
-        ttp.objective(sol);
+        ttp.updateObjective(sol);
+        if (batch) ftBest = sol.ft;
+        if (tree != null) tree.build(sol);
+        publish(sol);
       }
 
       // debug msg
@@ -513,12 +599,456 @@ public abstract class LocalSearch extends SearchHeuristic {
 
     // in order to compute sol.timeAcc
     // we need to use objective function
+    ttp.updateObjective(sol);
+
+    return sol;
+  }
+
+
+  /**
+   * apply a maximal set of non-overlapping 2-opt moves,
+   * most improving first
+   *
+   * the time change of a move only depends on the legs i-1..j,
+   * so moves on disjoint leg ranges do not interact: each one
+   * is re-validated on the partly updated solution (its range
+   * is untouched) before it is applied. the history vectors are
+   * left stale, the caller evaluates the solution once
+   *
+   * @return number of applied moves
+   */
+  protected int applyBatch(TTPSolution sol, TimeTree tree, int[] movesI, int[] movesJ,
+                           double[] movesDelta, int nbMoves, double threshold) {
+
+    // most improving first, ties in scan order
+    double[] gain = new double[nbMoves];
+    for (int m = 0; m < nbMoves; m++) gain[m] = -movesDelta[m];
+    int[] order = IndexSort.sortDescending(gain);
+
+    // legs used by the applied moves
+    BitSet used = new BitSet(ttp.getNbCities());
+    int nbApplied = 0;
+    for (int m : order) {
+      int i = movesI[m], j = movesJ[m];
+
+      // legs i-1..j must be untouched
+      int u = used.nextSetBit(i - 1);
+      if (u >= 0 && u <= j) continue;
+
+      // re-validate
+      double deltaT = tree != null ? delta2opt(sol, tree, i, j) : delta2optLoop(sol, i, j);
+      if (deltaT >= threshold) continue;
+
+      TwoOptHelper.do2opt(ttp, sol, i, j);
+      used.set(i - 1, j + 1);
+      nbApplied++;
+    }
+    return nbApplied;
+  }
+
+
+  /**
+   * 2-opt search with don't-look bits
+   *
+   * same moves and acceptance as fast2opt, but a tour position
+   * is only searched while its look bit is set. the scan always
+   * resumes at the first set bit, so positions are searched in
+   * the same order as fast2opt rescanning the tour. a position
+   * whose moves do not improve is switched off, after a move
+   * the ends of the changed edges are switched on, with the
+   * positions of the reversed segment whose accumulated weight
+   * changed by more than dlbWeightRatio of the capacity.
+   * since a move changes the speed on the rest of the tour,
+   * all bits are set again when none is left, the search stops
+   * after a round without any move (local optimum)
+   */
+  public TTPSolution dlb2opt(TTPSolution sol) {
+
+    // TTP data
+    int nbCities = ttp.getNbCities();
+    int nbItems = ttp.getNbItems();
+    long maxDeltaW = (long) (dlbWeightRatio * ttp.getCapacity());
+
+    ttp.objective(sol);
+    int[] tour = sol.getTour();
+
+    // reversed segment times
+    TimeTree tree = exactTSKP ? null : timeTree(sol);
+
+    // search params
+    double threshold = -0.1;
+    if (nbItems >= 100000) {
+      threshold = -10;
+    }
+    if (nbCities >= 50000) { // ex. pla85000 based instances
+      threshold = -1000;
+    }
+
+    // look bits by tour position
+    BitSet look = new BitSet(nbCities);
+    look.set(0, nbCities);
+
+    int nbIter = 0, nbScans = 0, nbRounds = 1, roundIter = 0;
+    while (nbIter < maxIterTSKP) {
+
+      // cleanup and stop execution if interrupted
+      if (Thread.currentThread().isInterrupted()) break;
+
+      int pos = look.nextSetBit(0);
+      if (pos < 0) {
+        // new round, unless the last one was idle
+        if (roundIter == 0) break;
+        look.set(0, nbCities);
+        roundIter = 0;
+        nbRounds++;
+        continue;
+      }
+      look.clear(pos);
+      nbScans++;
+
+      // moves with the city at either end of the reversed segment
+      int city = tour[pos] - 1;
+      int iBest = 0, jBest = 0;
+      double ftBest = sol.ft;
+      boolean improved = false;
+      for (int p = candidates.start(city); p < candidates.end(city); p++) {
+        int pos2 = sol.mapCI[candidates.nodes[p]];
+        int i = Math.min(pos, pos2), j = Math.max(pos, pos2);
+        if (i < 1 || i > nbCities - 2 || i == j) continue;
+
+        double ft = sol.ft + (tree != null ? delta2opt(sol, tree, i, j) : delta2optLoop(sol, i, j));
+        if (ft - ftBest < threshold) { // soft condition
+          iBest = i;
+          jBest = j;
+          ftBest = ft;
+          improved = true;
+
+          if (firstfit) break;
+        }
+      }
+      if (!improved) continue;
+
+      //===================================
+      // apply, then update the look bits
+      //===================================
+      nbIter++;
+      roundIter++;
+      int i = iBest, j = jBest;
+
+      // position q of the segment moves to i+j-q, it is
+      // switched on if its weight change is large
+      boolean[] bits = new boolean[j - i + 1];
+      for (int q = i; q <= j; q++) {
+        long wOld = sol.weightAcc[q];
+        long wNew = sol.weightAcc[i - 1] + sol.weightAcc[j] - sol.weightAcc[q - 1];
+        bits[j - q] = look.get(q) || Math.abs(wNew - wOld) > maxDeltaW;
+      }
+      for (int q = i; q <= j; q++) {
+        look.set(q, bits[q - i]);
+      }
+
+      // ends of the changed edges
+      look.set(i - 1);
+      look.set(i);
+      look.set(j);
+      look.set((j + 1) % nbCities);
+
+      // apply 2-opt move
+      TwoOptHelper.do2opt(ttp, sol, i, j);
+
+      // evaluate & update vectors
+      ttp.updateObjective(sol);
+      if (tree != null) tree.build(sol);
+      publish(sol);
+
+      // debug msg
+      if (this.debug) {
+        Deb.echo(">> TSKP " + nbIter +
+          ": ob=" + String.format("%.0f", sol.ob) +
+          " | ft=" + String.format("%.0f", sol.ft));
+      }
+    }
+
+    if (debug) Deb.echo("==> 2-opt (dlb) :" + nbIter + " moves, " + nbScans + " scans, " + nbRounds + " rounds");
+
+    // in order to compute sol.timeAcc
+    // we need to use objective function
+    ttp.updateObjective(sol);
+
+    return sol;
+  }
+
+
+  /**
+   * final time change of the 2-opt move reversing tour[i..j]
+   *
+   * only legs i-1 and j are new. the reversed legs i..j-1 keep
+   * their lengths and run at velocity v[i-1]+v[j]-v[r], their
+   * time is read from the time tree (summed directly when the
+   * segment is short) and the old time of legs i-1..j from the
+   * time accumulator: O(log n) per move instead of O(j-i)
+   *
+   * tree must hold the current tour of the evaluated solution
+   */
+  public double delta2opt(TTPSolution sol, TimeTree tree, int i, int j) {
+
+    int nbCities = ttp.getNbCities();
+    double maxSpeed = ttp.getMaxSpeed();
+    double C = (maxSpeed - ttp.getMinSpeed()) / ttp.getCapacity();
+    int[] tour = sol.getTour();
+
+    // velocities on the boundary legs
+    double v1 = maxSpeed - sol.weightAcc[i - 1] * C;
+    double v2 = maxSpeed - sol.weightAcc[j] * C;
+
+    // current time of legs i-1..j
+    double oldT = sol.timeAcc[j] - (i < 2 ? 0 : sol.timeAcc[i - 2]);
+
+    // new boundary legs
+    double newT = ttp.distFor(tour[i - 1] - 1, tour[j] - 1) / v1
+      + ttp.distFor(tour[i] - 1, tour[(j + 1) % nbCities] - 1) / v2;
+
+    // reversed legs
+    double sigma = v1 + v2;
+    if (j - i < SHORT_SEGMENT) {
+      for (int r = i; r < j; r++) {
+        newT += sol.legDist[r] / (sigma - maxSpeed + sol.weightAcc[r] * C);
+      }
+    }
+    else {
+      newT += tree.reversedTime(i, j - 1, sigma);
+    }
+
+    return newT - oldT;
+  }
+
+
+  /**
+   * same as delta2opt, walks the positions i-1..j
+   * of the neighbor tour (validation)
+   */
+  public double delta2optLoop(TTPSolution sol, int i, int j) {
+
+    int nbCities = ttp.getNbCities();
+    double maxSpeed = ttp.getMaxSpeed();
+    double C = (maxSpeed - ttp.getMinSpeed()) / ttp.getCapacity();
+    int[] tour = sol.getTour();
+
+    long wc = i - 2 < 0 ? 0 : sol.weightAcc[i - 2]; // fix index...
+    long d;
+    double deltaT = 0;
+    for (int q = i - 1; q <= j; q++) {
+
+      wc += TwoOptHelper.get2optValue(q, sol.weightRec, i, j);
+
+      // only the two boundary legs are new, the
+      // reversed ones are read from the leg lengths
+      if (q == i - 1) {
+        d = ttp.distFor(tour[i - 1] - 1, tour[j] - 1);
+      }
+      else if (q == j) {
+        d = ttp.distFor(tour[i] - 1, tour[(j + 1) % nbCities] - 1);
+      }
+      else {
+        d = sol.legDist[i + j - 1 - q];
+      }
+
+      deltaT += -sol.timeRec[q] + d / (maxSpeed - wc * C);
+    }
+    return deltaT;
+  }
+
+
+  /**
+   * or-opt search
+   *
+   * deal with the TSKP sub-problem
+   * relocates segments of 1 to OR_OPT_LENGTH cities, possibly
+   * reversed, next to a Delaunay neighbor of one of their ends.
+   * unlike 2-opt, the cities between the old and the new place
+   * keep their order, so a heavy city can be carried towards
+   * the end of the tour without reversing a long segment
+   */
+  public TTPSolution orOpt(TTPSolution sol) {
+
+    // TTP data
+    int nbCities = ttp.getNbCities();
+    int nbItems = ttp.getNbItems();
+
+    // best solution
     ttp.objective(sol);
+    int sBest=0, eBest=0, pBest=0;
+    boolean revBest = false;
+    double ftBest = sol.ft;
+
+    // shifted range times
+    TimeTree tree = exactTSKP ? null : timeTree(sol);
+
+    // current tour
+    int[] tour = sol.getTour();
+
+    // search params
+    double threshold = -0.1;
+    if (nbItems >= 100000) {
+      threshold = -10;
+    }
+    if (nbCities >= 50000) { // ex. pla85000 based instances
+      threshold = -1000;
+    }
+
+    boolean improved;
+    int nbIter = 0;
+
+    // search
+    do {
+      improved = false;
+      nbIter++;
+
+      // cleanup and stop execution if interrupted
+      if (Thread.currentThread().isInterrupted()) break;
+
+      // segment tour[s..e]
+      scan:
+      for (int s = 1; s < nbCities; s++) {
+        for (int e = s; e < Math.min(s + OR_OPT_LENGTH, nbCities); e++) {
+
+          // place one end of the segment next to a neighbor
+          for (int end = 0; end < (e > s ? 2 : 1); end++) {
+            int city = tour[end == 0 ? s : e] - 1;
+            for (int c = candidates.start(city); c < candidates.end(city); c++) {
+              int pc = sol.mapCI[candidates.nodes[c]];
+
+              // side 0: the segment follows the neighbor
+              // side 1: the segment precedes it
+              for (int side = 0; side < 2; side++) {
+                int p = side == 0 ? pc : (pc - 1 + nbCities) % nbCities;
+                if (p >= s - 1 && p <= e) continue; // null move
+                boolean rev = e > s && (side == 0) == (end == 1);
+
+                double ft = sol.ft + deltaOrOpt(sol, tree, s, e, p, rev);
+
+                // update best
+                if (ft - ftBest < threshold) { // soft condition
+                  sBest = s;
+                  eBest = e;
+                  pBest = p;
+                  revBest = rev;
+                  ftBest = ft;
+                  improved = true;
+
+                  if (firstfit) break scan;
+                }
+              }
+            }
+          }
+        }
+      }
+
+
+      //===================================
+      // update if improvement
+      //===================================
+      if (improved) {
+
+        // apply or-opt move
+        TwoOptHelper.doOrOpt(ttp, sol, sBest, eBest, pBest, revBest);
+
+        // evaluate & update vectors
+        ttp.updateObjective(sol);
+        if (tree != null) tree.build(sol);
+        publish(sol);
+      }
+
+      // debug msg
+      if (this.debug) {
+        Deb.echo(">> TSKP (or-opt) " + nbIter +
+          ": ob=" + String.format("%.0f", sol.ob) +
+          " | ft=" + String.format("%.0f", sol.ft));
+      }
+
+    } while (improved && nbIter<maxIterTSKP);
+
+    if (debug) Deb.echo("==> or-opt :" + nbIter + " iterations");
 
     return sol;
   }
 
 
+  /**
+   * final time change of the or-opt move relocating tour[s..e]
+   * between tour[p] and tour[p+1] (p outside s-1..e), reversed
+   * if rev is set
+   *
+   * the legs between the old and the new place keep their
+   * lengths, their weight only changes by the segment's weight:
+   * their time is read from the time tree (summed directly when
+   * the range is short or the tree is null). the segment and its
+   * three new boundary legs are summed directly
+   */
+  public double deltaOrOpt(TTPSolution sol, TimeTree tree, int s, int e, int p, boolean rev) {
+
+    int nbCities = ttp.getNbCities();
+    double maxSpeed = ttp.getMaxSpeed();
+    double C = (maxSpeed - ttp.getMinSpeed()) / ttp.getCapacity();
+    int[] tour = sol.getTour();
+    long[] W = sol.weightAcc;
+
+    // segment weight and ends in the new tour
+    long wSeg = W[e] - W[s - 1];
+    int first = (rev ? tour[e] : tour[s]) - 1;
+    int last = (rev ? tour[s] : tour[e]) - 1;
+
+    double oldT, newT;
+    long w0; // weight carried into the segment
+    if (p > e) {
+      // forward: tour[e+1..p] moves back without the segment
+      oldT = sol.timeAcc[p] - (s < 2 ? 0 : sol.timeAcc[s - 2]);
+      w0 = W[p] - wSeg;
+      newT = ttp.distFor(tour[s - 1] - 1, tour[e + 1] - 1) / (maxSpeed - W[s - 1] * C)
+        + shiftedTime(sol, tree, e + 1, p - 1, -wSeg)
+        + ttp.distFor(tour[p] - 1, first) / (maxSpeed - w0 * C)
+        + ttp.distFor(last, tour[(p + 1) % nbCities] - 1) / (maxSpeed - W[p] * C);
+    }
+    else {
+      // backward: tour[p+1..s-1] moves on with the segment
+      oldT = sol.timeAcc[e] - (p < 1 ? 0 : sol.timeAcc[p - 1]);
+      w0 = W[p];
+      newT = ttp.distFor(tour[p] - 1, first) / (maxSpeed - w0 * C)
+        + ttp.distFor(last, tour[p + 1] - 1) / (maxSpeed - (w0 + wSeg) * C)
+        + shiftedTime(sol, tree, p + 1, s - 2, wSeg)
+        + ttp.distFor(tour[s - 1] - 1, tour[(e + 1) % nbCities] - 1) / (maxSpeed - W[e] * C);
+    }
+
+    // segment legs
+    for (int q = s; q < e; q++) {
+      long w = rev ? w0 + W[e] - W[q] : w0 + W[q] - W[s - 1];
+      newT += sol.legDist[q] / (maxSpeed - w * C);
+    }
+
+    return newT - oldT;
+  }
+
+
+  /**
+   * travel time of the legs from..to (inclusive)
+   * when their weight is increased by deltaW
+   */
+  private double shiftedTime(TTPSolution sol, TimeTree tree, int from, int to, long deltaW) {
+
+    if (tree != null && to - from >= SHORT_SEGMENT) {
+      return tree.time(from, to, -deltaW * (ttp.getMaxSpeed() - ttp.getMinSpeed()) / ttp.getCapacity());
+    }
+
+    double maxSpeed = ttp.getMaxSpeed();
+    double C = (maxSpeed - ttp.getMinSpeed()) / ttp.getCapacity();
+    double t = 0;
+    for (int r = from; r <= to; r++) {
+      t += sol.legDist[r] / (maxSpeed - (sol.weightAcc[r] + deltaW) * C);
+    }
+    return t;
+  }
+
+
   /**
    * 2-opt search
    *
@@ -552,7 +1082,8 @@ public abstract class LocalSearch extends SearchHeuristic {
     // neighbor solution
     double ft;
     long wc;
-    int i, j, c1, c2, q;
+    int i, j, q;
+    long d;
     int nbIter = 0;
 
     // Delaunay triangulation
@@ -589,10 +1120,20 @@ public abstract class LocalSearch extends SearchHeuristic {
           for (q = i - 1; q <= j; q++) {
 
             wc += TwoOptHelper.get2optValue(q, sol.weightRec, i, j);
-            c1 = TwoOptHelper.get2optValue(q, tour, i, j) - 1;
-            c2 = TwoOptHelper.get2optValue((q + 1) % nbCities, tour, i, j) - 1;
 
-            deltaT += -sol.timeRec[q] + ttp.distFor(c1,c2) / (maxSpeed - wc * C);
+            // only the two boundary legs are new, the
+            // reversed ones are read from the leg lengths
+            if (q == i - 1) {
+              d = ttp.distFor(tour[i - 1] - 1, tour[j] - 1);
+            }
+            else if (q == j) {
+              d = ttp.distFor(tour[i] - 1, tour[(j + 1) % nbCities] - 1);
+            }
+            else {
+              d = sol.legDist[i + j - 1 - q];
+            }
+
+            deltaT += -sol.timeRec[q] + d / (maxSpeed - wc * C);
           }
 
           // retrieve neighbor's final time
@@ -620,10 +1161,11 @@ public abstract class LocalSearch extends SearchHeuristic {
       if (improved) {
 
         // apply 2-opt move
-        TwoOptHelper.do2opt(tour, iBest, jBest);
+        TwoOptHelper.do2opt(ttp, sol, iBest, jBest);
 
         // evaluate & update vectors
-        ttp.objective(sol);
+        ttp.updateObjective(sol);
+        publish(sol);
       }
 
       // debug msg
@@ -638,7 +1180,7 @@ public abstract class LocalSearch extends SearchHeuristic {
 
     // in order to compute sol.timeAcc
     // we need to use objective function
-    ttp.objective(sol);
+    ttp.updateObjective(sol);
     return sol;
   }
 
@@ -665,6 +1207,12 @@ public abstract class LocalSearch extends SearchHeuristic {
     int[] tour = sol.getTour();
     int[] pickingPlan = sol.getPickingPlan();
 
+    // tour leg lengths
+    long[] legs = sol.legDist;
+
+    // suffix times evaluation
+    TimeTree tree = exactKRP ? null : timeTree(sol);
+
     // delta parameters
     int deltaP, deltaW;
 
@@ -709,13 +1257,18 @@ public abstract class LocalSearch extends SearchHeuristic {
         // index where Bit-Flip happened
         origBF = sol.mapCI[A[k] - 1];
 
-        // starting time
-        ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
+        if (tree != null) {
+          ft = sol.ft + tree.delta(origBF, deltaW);
+        }
+        else {
+          // starting time
+          ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
 
-        // recalculate velocities from bit-flip city
-        for (r = origBF; r < nbCities; r++) {
-          wc = sol.weightAcc[r] + deltaW;
-          ft += ttp.distFor(tour[r]-1,tour[(r + 1) % nbCities] - 1) / (maxSpeed - wc * C);
+          // recalculate velocities from bit-flip city
+          for (r = origBF; r < nbCities; r++) {
+            wc = sol.weightAcc[r] + deltaW;
+            ft += legs[r] / (maxSpeed - wc * C);
+          }
         }
 
         G = fp - ft * R;
@@ -738,7 +1291,7 @@ public abstract class LocalSearch extends SearchHeuristic {
       if (improved) {
 
         // bit-flip
-        pickingPlan[kBest] = pickingPlan[kBest] != 0 ? 0 : A[kBest];
+        sol.flip(kBest, ttp);
 
 
         //===========================================================
@@ -753,20 +1306,29 @@ public abstract class LocalSearch extends SearchHeuristic {
         }
         fp = sol.fp + deltaP;
         origBF = sol.mapCI[A[kBest] - 1];
-        ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
-        for (r = origBF; r < nbCities; r++) {
-          // recalculate velocities from bit-flip city
-          wc = sol.weightAcc[r] + deltaW;
-          ft += ttp.distFor(tour[r] - 1, tour[(r + 1) % nbCities] - 1) / (maxSpeed - wc * C);
-          // recover wacc and tacc
-          sol.weightAcc[r] = wc;
-          sol.timeAcc[r] = ft;
+        if (tree != null) {
+          // history vectors are recovered at the end
+          ft = sol.ft + tree.delta(origBF, deltaW);
+          tree.shift(origBF, deltaW);
+          sol.wend -= deltaW;
+        }
+        else {
+          ft = origBF == 0 ? 0 : sol.timeAcc[origBF - 1];
+          for (r = origBF; r < nbCities; r++) {
+            // recalculate velocities from bit-flip city
+            wc = sol.weightAcc[r] + deltaW;
+            ft += legs[r] / (maxSpeed - wc * C);
+            // recover wacc and tacc
+            sol.weightAcc[r] = wc;
+            sol.timeAcc[r] = ft;
+          }
+          sol.wend = capacity - sol.weightAcc[nbCities - 1];
         }
         G = fp - ft * R;
         sol.ob = G;
         sol.fp = fp;
         sol.ft = ft;
-        sol.wend = capacity - sol.weightAcc[nbCities - 1];
+        publish(sol);
         //===========================================================
 
         // debug msg
@@ -783,7 +1345,7 @@ public abstract class LocalSearch extends SearchHeuristic {
     if (debug) Deb.echo("==> bitflip :" + nbIter + " iterations");
 
     // in order to recover all history vectors
-    ttp.objective(sol);
+    ttp.updateObjective(sol);
 
     return sol;
   }
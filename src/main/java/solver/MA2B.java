@@ -3,14 +3,59 @@ package solver;
 import ea.*;
 import ttp.TTP1Instance;
 import ttp.TTPSolution;
+import utils.CandidateList;
 import utils.Deb;
-import utils.Quicksort;
+import utils.GraphHelper;
+import utils.HashHelper;
+import utils.IndexSort;
+import utils.RandGen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
 
 /**
  * Created by kyu on 12/29/15.
  */
 public class MA2B extends Evolution {
 
+  // Delaunay candidates, shared by the tour generators and
+  // the local searches (built by search() if null)
+  protected CandidateList candidates;
+
+  // local search of a worker, short runs for the offspring
+  private final ThreadLocal<LocalSearch> offspringLS = ThreadLocal.withInitial(() -> {
+    LocalSearch ls = new CS2SA(ttp, candidates);
+    ls.setIncumbent(incumbent);
+    ls.maxIterTSKP = 10;
+    ls.maxIterKRP = 10;
+    ls.firstfit();
+    return ls;
+  });
+
+  // LK tours and local search of a worker, initial members
+  private final ThreadLocal<Initialization> initTours = ThreadLocal.withInitial(() ->
+    new Initialization(ttp, candidates));
+  private final ThreadLocal<LocalSearch> initLS = ThreadLocal.withInitial(() -> {
+    LocalSearch ls = new CS2SA(ttp, candidates);
+    ls.setIncumbent(incumbent);
+    // reduce LS time
+    ls.maxIterTSKP = 50;
+    ls.maxIterKRP = 50;
+    ls.firstfit();
+    return ls;
+  });
+
+  // island model (MA2BIslands): elite exchange and
+  // island number, null for a single population
+  public Migration migration;
+  public int island;
+
+
   public MA2B() {
     super();
   }
@@ -19,6 +64,11 @@ public class MA2B extends Evolution {
     super(ttp);
   }
 
+  public MA2B(TTP1Instance ttp, CandidateList candidates) {
+    super(ttp);
+    this.candidates = candidates;
+  }
+
 
 
   @Override
@@ -32,58 +82,47 @@ public class MA2B extends Evolution {
     if (debug) Deb.echo(">>>"+selectSize);
     int nbCities = ttp.getNbCities();
     int nbItems = ttp.getNbItems();
+    if (candidates == null) candidates = GraphHelper.delaunay(ttp);
 
     //===============================================
     // generate initial population
     //===============================================
-    // to construct initial solutions
-    Constructive construct = new Constructive(ttp);
-    Initialization init = new Initialization(ttp);
+    long initStart = System.currentTimeMillis();
 
     // current population & offspring
     pop = new Population(Evolution.POP_SIZE);
     Population offpop = new Population(selectSize);
     int offpopSize;
 
-    // initialize one using LK
-    pop.sol[0] = new TTPSolution(
-      construct.linkernTour(),
-      construct.zerosPickingPlan()
-    );
-    // use one kick LK to initialize the tours
-    for (int i=1; i<POP_SIZE; i++) {
-      pop.sol[i] = new TTPSolution(
-        init.rlinkern(),
-        construct.zerosPickingPlan()
-      );
-      // sleep for 2 ms to randomize
-      try {
-        Thread.sleep(2);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-      if (debug) Deb.echo("> " + i + ", tour initialized !");
-    }
+    // workers of the initialization, the restarts and the
+    // offspring
+    ExecutorService executor = newWorkers();
 
-    // use local search
-    LocalSearch ls = new CS2SA(ttp);
-    // reduce LS time
-    ls.maxIterTSKP = 50;
-    ls.maxIterKRP = 50;
-    ls.firstfit();
-    // apply LS for all
+    // one seed per member, drawn from the run's random numbers
+    int[] initSeeds = new int[POP_SIZE];
     for (int i=0; i<POP_SIZE; i++) {
-      ttp.objective(pop.sol[i]);
-      //if (nbItems < 100000) pop.sol[i] = ls.fast2opt(pop.sol[i]);
-      // initialize pp
-      pop.sol[i] = ls.insertT2(pop.sol[i]);
-      // simple bit-flip on KRP
-      if (nbItems < 100000)
-        pop.sol[i] = ls.lsBitFlip(pop.sol[i]);
-      if (debug) Deb.echo("> "+i+", pick plan initialized ! >> "+pop.sol[i].ob);
+      initSeeds[i] = RandGen.get().nextInt();
+    }
+    initPopulation(executor, initSeeds, 0);
+    initTime = System.currentTimeMillis() - initStart;
+
+    // stopped during the initialization
+    if (Thread.currentThread().isInterrupted()) {
+      executor.shutdownNow();
+      return incumbent.getSolution();
     }
 
-    if (debug) Deb.echo("Initialization done !");
+    if (debug) Deb.echo("Initialization done ! " + initTime + " ms");
+
+    // fingerprints of the members, duplicate checks
+    long[] popHash = new long[POP_SIZE];
+    PopulationIndex index = indexPopulation(popHash);
+
+    // use local search
+    LocalSearch ls = new CS2SA(ttp, candidates);
+    // improvements found by LS count as best-so-far
+    ls.setIncumbent(incumbent);
+    ls.firstfit();
 
     //===============================================
     // start EA search
@@ -91,25 +130,25 @@ public class MA2B extends Evolution {
     double bestSoFar = Double.MIN_VALUE;
     int nbGen = 0;
     int nbIdleSteps = 0;
-    // max iteration in LS
-    ls.maxIterTSKP = 10;
-    ls.maxIterKRP = 10;
     do {
 
       nbGen++;
       nbIdleSteps++;
       //Deb.echo("NBGEN: "+nbGen);
 
+      // elites of the other islands replace the worst members
+      if (migration != null && migration.due(nbGen)) {
+        immigrate(index, popHash);
+      }
+
       //===============================================
       // get & sort fitness, use indices
       //===============================================
-      Double[] fits = new Double[POP_SIZE];
+      double[] fits = new double[POP_SIZE];
       for (int i=0; i<POP_SIZE; i++) {
         fits[i] = pop.sol[i].ob;
       }
-      Quicksort<Double> qs = new Quicksort<>(fits);
-      qs.sort();
-      int[] idx = qs.getIndices();
+      int[] idx = IndexSort.sortDescending(fits);
 
       // get fittest
       TTPSolution fittest = pop.sol[idx[0]];
@@ -117,6 +156,7 @@ public class MA2B extends Evolution {
       if (fittest.ob > bestSoFar) {
         bestSoFar = fittest.ob;
         nbIdleSteps = 0;
+        publish(fittest);
       }
       // debug msg
       if (this.debug) {
@@ -125,8 +165,34 @@ public class MA2B extends Evolution {
         Deb.echo("---");
       }
       // stop execution if interrupted (runtime limit: 600sec)
-      if (Thread.currentThread().isInterrupted() || pop.sol[idx[POP_SIZE-1]].ob==fittest.ob )
+      if (Thread.currentThread().isInterrupted()) {
+        executor.shutdownNow();
         return fittest;
+      }
+      // converged population
+      if (pop.sol[idx[POP_SIZE-1]].ob==fittest.ob) {
+        if (migration == null) {
+          executor.shutdownNow();
+          return fittest;
+        }
+        // island: restart around the fittest member
+        restart(executor, fittest);
+        if (Thread.currentThread().isInterrupted()) {
+          executor.shutdownNow();
+          return fittest;
+        }
+        index = indexPopulation(popHash);
+        continue;
+      }
+
+      // send copies of the elites
+      if (migration != null && migration.due(nbGen)) {
+        TTPSolution[] elites = new TTPSolution[Math.min(migration.nbMigrants, POP_SIZE)];
+        for (int i=0; i<elites.length; i++) {
+          elites[i] = pop.sol[idx[i]];
+        }
+        migration.send(island, elites);
+      }
 
       // DEBUG PRINT
       if (debug)
@@ -140,80 +206,71 @@ public class MA2B extends Evolution {
       //===============================================
       // Genetic evolution
       //===============================================
-      for (int i = 0; i < selectSize; i++) {
-
-        /* Select parents */
-        TTPSolution[] p = Selection.tournament(pop);
-
-        /* Crossover parents */
-        TTPSolution c = MPX2.crossover(p[0], p[1], ttp);
-        ttp.objective(c);
-
-        /* Apply local search */
-        double lsp = Math.random();
-        if (lsp < LS_RATE) {
-          //Deb.echo("APPLY LS");
-          c = ls.fast2opt(c);
-          c = ls.lsBitFlip(c);
-        }
-
-        /* add to offspring population */
-        // check if already in offpop
-        boolean identical = false;
-        for (int k = 0; k < POP_SIZE; k++) {
-          // either tour or picking plan is identical
-          if (pop.sol[k].ob == c.ob) {
-            identical = true;
-            break;
-          }
-          if (k<offpopSize && offpop.sol[k].ob == c.ob) {
-            identical = true;
-            break;
-          }
-        }
-
-        // if not existent
-        if (!identical) {
-          //Deb.echo("~~==============================~~ " + c.ob);
+      // seeds of the offspring and of their mutants, the
+      // generation does not depend on the number of threads
+      final int[] seeds = new int[2*selectSize];
+      for (int i=0; i<2*selectSize; i++) {
+        seeds[i] = RandGen.get().nextInt();
+      }
 
-          // add to offspring population
-          offpop.sol[offpopSize++] = c;
+      /* Select parents, crossover, apply local search */
+      final TTPSolution[] children = new TTPSolution[selectSize];
+      final long[] childHash = new long[selectSize];
+      runAll(executor, selectSize, i -> {
+        children[i] = breed(seeds[i]);
+        childHash[i] = HashHelper.of(children[i]);
+      });
+      if (Thread.currentThread().isInterrupted()) break;
+
+      /* add to offspring population, in order */
+      long[] offHash = new long[selectSize];
+      final int[] identical = new int[selectSize];
+      int nbIdentical = 0;
+      for (int i = 0; i < selectSize; i++) {
+        TTPSolution c = children[i];
+        // same tour and picking plan as a member or an offspring
+        if (index.contains(c, childHash[i])) {
+          identical[nbIdentical++] = i;
+          continue;
         }
-        // use mutation to eliminate premature convergence
-        else {
-          //Deb.echo("IDENTICAL: " + c.ob);
-          int[] x;
-          x = Mutation.doubleBridge(c.getTour());
-          x = Mutation.doubleBridge(x);
-          c.setTour(x);
-
-          //Deb.echo("APPLY MUTATION PP");
-          //c = Mutation.randomFlips(c, MUTATION_STRENGTH_PP, ttp); // objective included
-
-          // create new pick plan
-          c = ls.insertT2(c);
-
-          //Deb.echo("ID. APPLY LS");
-          c = ls.fast2opt(c);
-          c = ls.lsBitFlip(c);
-
-          offpop.sol[offpopSize++] = c;
+        // if not existent, add to offspring population
+        index.add(c, childHash[i]);
+        offHash[offpopSize] = childHash[i];
+        offpop.sol[offpopSize++] = c;
+      }
 
-        }
+      /* use mutation to eliminate premature convergence */
+      runAll(executor, nbIdentical, k -> {
+        int i = identical[k];
+        children[i] = mutate(children[i], seeds[selectSize + i]);
+        childHash[i] = HashHelper.of(children[i]);
+      });
+      if (Thread.currentThread().isInterrupted()) break;
+      for (int k = 0; k < nbIdentical; k++) {
+        int i = identical[k];
+        index.add(children[i], childHash[i]);
+        offHash[offpopSize] = childHash[i];
+        offpop.sol[offpopSize++] = children[i];
       }
 
       //===============================================
       // Add offspring to population
       //===============================================
       for (int i=0; i<offpopSize; i++) {
-        TTPSolution c = offpop.sol[i];
         // replace worst solutions
-        pop.sol[idx[j--]] = c;
+        int w = idx[j--];
+        index.remove(pop.sol[w], popHash[w]);
+        pop.sol[w] = offpop.sol[i];
+        popHash[w] = offHash[i];
       }
 
 
       // stop when no improvements
     } while (nbGen<MAX_GEN && nbIdleSteps<MAX_IDLE_STEPS);
+    executor.shutdownNow();
+
+    // stopped during a generation
+    if (Thread.currentThread().isInterrupted()) return pop.fittest();
 
 
 
@@ -233,4 +290,179 @@ public class MA2B extends Evolution {
 
     return pop.fittest();
   }
+
+
+  /**
+   * fingerprints of the members in popHash, and their index
+   */
+  private PopulationIndex indexPopulation(long[] popHash) {
+    PopulationIndex index = new PopulationIndex();
+    for (int i=0; i<POP_SIZE; i++) {
+      popHash[i] = HashHelper.of(pop.sol[i]);
+      index.add(pop.sol[i], popHash[i]);
+    }
+    return index;
+  }
+
+
+  /**
+   * immigrants replace the worst members if they are fitter,
+   * members already in the population are ignored
+   */
+  private void immigrate(PopulationIndex index, long[] popHash) {
+
+    for (TTPSolution im : migration.receive(island)) {
+      long h = HashHelper.of(im);
+      if (index.contains(im, h)) continue;
+
+      int w = 0;
+      for (int i=1; i<POP_SIZE; i++) {
+        if (pop.sol[i].ob < pop.sol[w].ob) w = i;
+      }
+      if (im.ob <= pop.sol[w].ob) continue;
+
+      index.remove(pop.sol[w], popHash[w]);
+      pop.sol[w] = im;
+      popHash[w] = h;
+      index.add(im, h);
+    }
+  }
+
+
+  /**
+   * new initial population, the fittest member is kept as
+   * member 0
+   */
+  private void restart(ExecutorService executor, TTPSolution fittest) {
+
+    if (debug) Deb.echo("island " + island + " restarts >> " + fittest.ob);
+    int[] seeds = new int[POP_SIZE];
+    for (int i=1; i<POP_SIZE; i++) {
+      seeds[i] = RandGen.get().nextInt();
+    }
+    pop.sol[0] = fittest;
+    initPopulation(executor, seeds, 1);
+  }
+
+
+  /**
+   * offspring of the current population: select parents,
+   * crossover, and local search with probability LS_RATE
+   */
+  protected TTPSolution breed(int seed) {
+
+    RandGen.setThreadSeed(seed);
+    LocalSearch ls = offspringLS.get();
+
+    /* Select parents */
+    TTPSolution[] p = Selection.tournament(pop);
+
+    /* Crossover parents */
+    TTPSolution c = MPX2.crossover(p[0], p[1], ttp);
+    ttp.objective(c);
+
+    /* Apply local search */
+    double lsp = RandGen.random();
+    if (lsp < LS_RATE) {
+      c = ls.fast2opt(c);
+      c = ls.lsBitFlip(c);
+    }
+    return c;
+  }
+
+
+  /**
+   * replace an offspring identical to a member: double bridge
+   * mutations, new picking plan and local search
+   */
+  protected TTPSolution mutate(TTPSolution c, int seed) {
+
+    RandGen.setThreadSeed(seed);
+    LocalSearch ls = offspringLS.get();
+
+    int[] x;
+    x = Mutation.doubleBridge(c.getTour());
+    x = Mutation.doubleBridge(x);
+    c.setTour(x);
+
+    // create new pick plan
+    c = ls.insertT2(c);
+
+    c = ls.fast2opt(c);
+    c = ls.lsBitFlip(c);
+    return c;
+  }
+
+
+  // daemon workers, a runtime limit must not keep the JVM alive
+  private ExecutorService newWorkers() {
+    return Executors.newFixedThreadPool(Math.max(1, nbThreads), r -> {
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
+  }
+
+
+  /**
+   * run task(0..n-1) on the workers and wait for all of them,
+   * the tasks are cancelled if the caller is interrupted
+   */
+  private void runAll(ExecutorService executor, int n, IntConsumer task) {
+
+    List<Future<?>> futures = new ArrayList<>(n);
+    for (int i = 0; i < n; i++) {
+      final int k = i;
+      futures.add(executor.submit(() -> task.accept(k)));
+    }
+
+    try {
+      for (Future<?> f : futures) f.get();
+    } catch (InterruptedException e) {
+      for (Future<?> f : futures) f.cancel(true);
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      for (Future<?> f : futures) f.cancel(true);
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+
+  /**
+   * build the members first..POP_SIZE-1 of the initial
+   * population on the workers
+   *
+   * member i gets an LK tour generated with seeds[i] (member 0
+   * the database LK tour), then its picking plan from insertT2
+   * and a short bit-flip search. the random numbers of member i
+   * are seeded with seeds[i] as well, so the population does not
+   * depend on the number of threads
+   */
+  protected void initPopulation(ExecutorService executor, final int[] seeds, int first) {
+
+    final int nbItems = ttp.getNbItems();
+
+    runAll(executor, POP_SIZE - first, k -> {
+      int i = first + k;
+      Initialization init = initTours.get();
+      LocalSearch ls = initLS.get();
+      // to construct initial solutions
+      Constructive construct = new Constructive(ttp, candidates);
+
+      RandGen.setThreadSeed(seeds[i]);
+      int[] tour = i == 0 ? construct.linkernTour() : init.rlinkern(seeds[i]);
+      if (Thread.currentThread().isInterrupted()) return;
+      if (debug) Deb.echo("> " + i + ", tour initialized !");
+
+      TTPSolution sol = new TTPSolution(tour, construct.zerosPickingPlan());
+      ttp.objective(sol);
+      // initialize pp
+      sol = ls.insertT2(sol);
+      // simple bit-flip on KRP
+      if (nbItems < 100000)
+        sol = ls.lsBitFlip(sol);
+      pop.sol[i] = sol;
+      if (debug) Deb.echo("> "+i+", pick plan initialized ! >> "+sol.ob);
+    });
+  }
 }
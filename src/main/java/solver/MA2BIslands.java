@@ -0,0 +1,119 @@
+package solver;
+
+import ea.Migration;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import utils.CandidateList;
+import utils.Deb;
+import utils.GraphHelper;
+import utils.RandGen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * island model of MA2B
+ *
+ * nbIslands MA2B populations evolve on their own threads and
+ * exchange copies of their elites every migrationInterval
+ * generations (ea.Migration). a converged island restarts around
+ * its fittest member instead of stopping. the islands share the
+ * best-so-far registry and the nbThreads offspring workers.
+ * island i draws its random numbers from its own seed, the
+ * migrations are asynchronous: a run is not reproducible
+ */
+public class MA2BIslands extends Evolution {
+
+  public int nbIslands = 4;
+  // ring, full or random
+  public String topology = "ring";
+  public int migrationInterval = 20;
+  public int nbMigrants = 2;
+
+  protected MA2B[] islands;
+
+
+  public MA2BIslands() {
+    super();
+  }
+
+  public MA2BIslands(TTP1Instance ttp) {
+    super(ttp);
+  }
+
+
+  @Override
+  public TTPSolution search() {
+
+    final Migration migration = new Migration(nbIslands, topology, migrationInterval, nbMigrants);
+
+    // islands, one seed each, on the same candidate list
+    CandidateList candidates = GraphHelper.delaunay(ttp);
+    islands = new MA2B[nbIslands];
+    final int[] seeds = new int[nbIslands];
+    for (int i = 0; i < nbIslands; i++) {
+      MA2B ma = new MA2B(ttp, candidates);
+      ma.setIncumbent(incumbent);
+      ma.nbThreads = Math.max(1, nbThreads / nbIslands);
+      ma.migration = migration;
+      ma.island = i;
+      if (debug) ma.debug();
+      islands[i] = ma;
+      seeds[i] = RandGen.get().nextInt();
+    }
+
+    // daemon workers, a runtime limit must not keep the JVM alive
+    ExecutorService executor = Executors.newFixedThreadPool(nbIslands, r -> {
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
+
+    List<Future<TTPSolution>> results = new ArrayList<>();
+    for (int i = 0; i < nbIslands; i++) {
+      final int k = i;
+      results.add(executor.submit(() -> {
+        RandGen.setThreadSeed(seeds[k]);
+        TTPSolution sx = islands[k].search();
+        if (debug) Deb.echo("island " + k + " done >> " + (sx == null ? "-" : sx.ob));
+        return sx;
+      }));
+    }
+    executor.shutdown();
+
+    // wait for the islands, stop them if interrupted
+    TTPSolution best = null;
+    try {
+      for (Future<TTPSolution> f : results) {
+        TTPSolution sx = f.get();
+        if (sx != null && (best == null || sx.ob > best.ob)) best = sx;
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      return incumbent.getSolution();
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      throw new RuntimeException(e.getCause());
+    }
+
+    return best;
+  }
+
+
+  // slowest island initialization
+  @Override
+  public long getInitTime() {
+    long t = 0;
+    if (islands != null) {
+      for (MA2B ma : islands) {
+        if (ma != null) t = Math.max(t, ma.getInitTime());
+      }
+    }
+    return t;
+  }
+}
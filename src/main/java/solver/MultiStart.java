@@ -0,0 +1,120 @@
+package solver;
+
+import ea.Initialization;
+import ttp.TTP1Instance;
+import ttp.TTPSolution;
+import utils.CandidateList;
+import utils.Deb;
+import utils.GraphHelper;
+import utils.RandGen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * parallel multi-start local search
+ *
+ * nbThreads independent local searches share the (read-only) TTP
+ * instance, its Delaunay candidate list and the best-so-far
+ * registry. start k seeds the thread's random numbers with seed+k
+ * and begins from a linkern tour generated with the same seed,
+ * packed like in CS2SA.
+ * workers keep taking new starts until maxStarts is reached or
+ * the search is interrupted, the best solution found is returned
+ */
+public class MultiStart extends SearchHeuristic {
+
+  // one local search per worker
+  protected Supplier<? extends LocalSearch> factory;
+  protected int nbThreads;
+  protected int seed;
+  // Delaunay candidates, shared by the workers' tour generators
+  protected CandidateList candidates;
+
+  // total number of starts
+  public int maxStarts = Integer.MAX_VALUE;
+
+  public MultiStart(TTP1Instance ttp, Supplier<? extends LocalSearch> factory,
+                    int nbThreads, int seed) {
+    this(ttp, factory, nbThreads, seed, GraphHelper.delaunay(ttp));
+  }
+
+  /**
+   * candidates: Delaunay candidate list of the instance, the
+   * factory's local searches should share it too
+   */
+  public MultiStart(TTP1Instance ttp, Supplier<? extends LocalSearch> factory,
+                    int nbThreads, int seed, CandidateList candidates) {
+    super(ttp);
+    this.factory = factory;
+    this.nbThreads = nbThreads;
+    this.seed = seed;
+    this.candidates = candidates;
+  }
+
+
+  @Override
+  public TTPSolution search() {
+
+    final AtomicInteger nextStart = new AtomicInteger();
+
+    // daemon workers, a runtime limit must not keep the JVM alive
+    ExecutorService executor = Executors.newFixedThreadPool(nbThreads, r -> {
+      Thread t = new Thread(r);
+      t.setDaemon(true);
+      return t;
+    });
+
+    List<Future<?>> workers = new ArrayList<>();
+    for (int w = 0; w < nbThreads; w++) {
+      workers.add(executor.submit(() -> {
+
+        LocalSearch ls = factory.get();
+        ls.setIncumbent(incumbent);
+        Constructive construct = new Constructive(ttp, candidates);
+        Initialization init = new Initialization(ttp, candidates);
+
+        int k;
+        while (!Thread.currentThread().isInterrupted() &&
+               (k = nextStart.getAndIncrement()) < maxStarts) {
+
+          // start k: seeded random numbers and linkern tour
+          RandGen.setThreadSeed(seed + k);
+          int[] tour = init.rlinkern(seed + k);
+          if (Thread.currentThread().isInterrupted()) break;
+
+          // pre-process the knapsack
+          TTPSolution s0 = new TTPSolution(tour, construct.zerosPickingPlan());
+          if (ttp.getNbCities() < 30000) s0 = ls.insertAndEliminate(s0);
+          else s0 = ls.insertT2(s0);
+
+          ls.setS0(s0);
+          TTPSolution sx = ls.search();
+          incumbent.publish(sx, ttp);
+
+          if (debug) Deb.echo("start " + k + " >> " + sx.ob + " | best: " + incumbent.getOb());
+        }
+      }));
+    }
+    executor.shutdown();
+
+    // wait for the workers, stop them if interrupted
+    try {
+      for (Future<?> f : workers) f.get();
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      executor.shutdownNow();
+      throw new RuntimeException(e.getCause());
+    }
+
+    return incumbent.getSolution();
+  }
+}
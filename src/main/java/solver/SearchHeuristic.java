@@ -14,6 +14,9 @@ public abstract class SearchHeuristic extends TTPHeuristic {
   protected int maxIterTSKP = Integer.MAX_VALUE;
   protected int maxIterKRP = Integer.MAX_VALUE;
 
+  // best-so-far registry, may be shared with the caller
+  protected Incumbent incumbent = new Incumbent();
+
   public SearchHeuristic() {
     super();
   }
@@ -23,4 +26,21 @@ public abstract class SearchHeuristic extends TTPHeuristic {
   }
   
   public abstract TTPSolution search();
+
+
+  // best-so-far registry
+  public void setIncumbent(Incumbent incumbent) {
+    this.incumbent = incumbent;
+  }
+  public Incumbent getIncumbent() {
+    return incumbent;
+  }
+
+  /**
+   * report a solution to the best-so-far registry,
+   * sol.ob must be up to date
+   */
+  protected void publish(TTPSolution sol) {
+    incumbent.publish(sol, ttp);
+  }
 }
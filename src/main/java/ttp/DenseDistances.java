@@ -0,0 +1,34 @@
+package ttp;
+
+/**
+ * dense distance matrix
+ *
+ * row-major int matrix in a single array,
+ * 4*n^2 bytes, used for small instances
+ */
+public class DenseDistances implements DistanceOracle {
+
+  private final int n;
+  private final int[] D;
+
+
+  public DenseDistances(double[] xs, double[] ys) {
+    this.n = xs.length;
+    this.D = new int[n*n];
+
+    EuclidDistances euclid = new EuclidDistances(xs, ys);
+    for (int i = 0; i < n; i++) {
+      D[i*n + i] = 0;
+      for (int j = i+1; j < n; j++) {
+        int d = (int) euclid.dist(i, j);
+        D[i*n + j] = d;
+        D[j*n + i] = d;
+      }
+    }
+  }
+
+  @Override
+  public long dist(int i, int j) {
+    return D[i*n + j];
+  }
+}
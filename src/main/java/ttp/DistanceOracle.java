@@ -0,0 +1,12 @@
+package ttp;
+
+/**
+ * distance oracle
+ *
+ * distances between cities (0-based indices),
+ * ceil-rounded euclidean distances of the instance
+ */
+public interface DistanceOracle {
+
+  long dist(int i, int j);
+}
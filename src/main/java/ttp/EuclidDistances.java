@@ -0,0 +1,27 @@
+package ttp;
+
+/**
+ * distances computed on the fly
+ * from flat coordinate arrays
+ *
+ * no memory beyond the coordinates, used
+ * when a matrix does not fit the heap budget
+ */
+public class EuclidDistances implements DistanceOracle {
+
+  private final double[] xs;
+  private final double[] ys;
+
+
+  public EuclidDistances(double[] xs, double[] ys) {
+    this.xs = xs;
+    this.ys = ys;
+  }
+
+  @Override
+  public long dist(int i, int j) {
+    double P = xs[i] - xs[j];
+    double Q = ys[i] - ys[j];
+    return (long) Math.ceil(Math.sqrt(P*P + Q*Q));
+  }
+}
@@ -0,0 +1,231 @@
+package ttp;
+
+import utils.CityCoordinates;
+import utils.ConfigHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * binary instance cache
+ *
+ * stores the parsed data of a .ttp file (parameters, coordinates,
+ * items and per-city item clusters) in a compact binary file read
+ * back through a memory-mapped channel. enabled with the `ttpcache`
+ * property: `true` writes <instance>.ttp.bin next to the instance,
+ * any other value is the directory holding the cache files
+ *
+ * layout: magic, version, source length, source modification
+ * time, CRC32 of the payload, then the payload. a cache file
+ * that does not match its source is rebuilt
+ */
+public class InstanceCache {
+
+  private static final int MAGIC = 0x54545043; // "TTPC"
+  private static final int VERSION = 1;
+  private static final int HEADER = 4 + 4 + 8 + 8 + 8;
+
+
+  /**
+   * cache file of an instance file,
+   * null when caching is disabled
+   */
+  public static File cacheFile(File ttpFile) {
+
+    String dir = ConfigHelper.getProperty("ttpcache");
+    if (dir == null || dir.trim().isEmpty()) return null;
+    dir = dir.trim();
+
+    if (dir.equals("true")) {
+      return new File(ttpFile.getPath() + ".bin");
+    }
+    return new File(dir, ttpFile.getName() + ".bin");
+  }
+
+
+  /**
+   * fill the instance from its cache file
+   *
+   * @return false if the file is missing, outdated or corrupted
+   */
+  static boolean load(TTP1Instance ttp, File cache) {
+
+    if (!cache.isFile()) return false;
+
+    try (FileChannel ch = FileChannel.open(cache.toPath(), StandardOpenOption.READ)) {
+
+      long size = ch.size();
+      if (size < HEADER) return false;
+      MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      buf.order(ByteOrder.LITTLE_ENDIAN);
+
+      // header
+      if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return false;
+      if (buf.getLong() != ttp.ttpFile.length()) return false;
+      if (buf.getLong() != ttp.ttpFile.lastModified()) return false;
+      long crc = buf.getLong();
+
+      ByteBuffer data = buf.slice().order(ByteOrder.LITTLE_ENDIAN);
+      CRC32 check = new CRC32();
+      check.update(data.duplicate());
+      if (check.getValue() != crc) return false;
+
+      // parameters
+      int nbCities = data.getInt();
+      int nbItems = data.getInt();
+      ttp.nbCities = nbCities;
+      ttp.nbItems = nbItems;
+      ttp.capacity = data.getLong();
+      ttp.minSpeed = data.getDouble();
+      ttp.maxSpeed = data.getDouble();
+      ttp.rent = data.getDouble();
+      ttp.knapsackDataType = getString(data);
+      ttp.edgeWeightType = getString(data);
+
+      // coordinates
+      double[] xs = new double[nbCities];
+      double[] ys = new double[nbCities];
+      data.asDoubleBuffer().get(xs);
+      data.position(data.position() + 8 * nbCities);
+      data.asDoubleBuffer().get(ys);
+      data.position(data.position() + 8 * nbCities);
+      ttp.coordinates = new CityCoordinates[nbCities];
+      for (int i = 0; i < nbCities; i++) {
+        ttp.coordinates[i] = new CityCoordinates(xs[i], ys[i]);
+      }
+
+      // items
+      ttp.profits = getInts(data, nbItems);
+      ttp.weights = getInts(data, nbItems);
+      ttp.availability = getInts(data, nbItems);
+
+      // clusters
+      int[] offsets = getInts(data, nbCities + 1);
+      int[] items = getInts(data, nbItems);
+      ttp.clusterItems(offsets, items);
+
+      return true;
+
+    } catch (IOException | RuntimeException ex) {
+      // unreadable cache, the instance is parsed again
+      return false;
+    }
+  }
+
+
+  /**
+   * write the cache file of a parsed instance,
+   * through a temporary file so that concurrent
+   * runs never read a partial cache
+   */
+  static void store(TTP1Instance ttp, File cache) {
+
+    int nbCities = ttp.nbCities;
+    int nbItems = ttp.nbItems;
+    byte[] kpType = bytes(ttp.knapsackDataType);
+    byte[] ewType = bytes(ttp.edgeWeightType);
+
+    int size = 4 + 4 + 8 + 8 + 8 + 8
+      + 4 + (kpType == null ? 0 : kpType.length)
+      + 4 + (ewType == null ? 0 : ewType.length)
+      + 16 * nbCities
+      + 12 * nbItems
+      + 4 * (nbCities + 1) + 4 * nbItems;
+    ByteBuffer data = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+    // parameters
+    data.putInt(nbCities);
+    data.putInt(nbItems);
+    data.putLong(ttp.capacity);
+    data.putDouble(ttp.minSpeed);
+    data.putDouble(ttp.maxSpeed);
+    data.putDouble(ttp.rent);
+    putString(data, kpType);
+    putString(data, ewType);
+
+    // coordinates
+    for (int i = 0; i < nbCities; i++) data.putDouble(ttp.coordinates[i].getX());
+    for (int i = 0; i < nbCities; i++) data.putDouble(ttp.coordinates[i].getY());
+
+    // items
+    for (int v : ttp.profits) data.putInt(v);
+    for (int v : ttp.weights) data.putInt(v);
+    for (int v : ttp.availability) data.putInt(v);
+
+    // clusters
+    for (int v : ttp.clusters.offsets) data.putInt(v);
+    for (int v : ttp.clusters.items) data.putInt(v);
+    data.flip();
+
+    CRC32 crc = new CRC32();
+    crc.update(data.duplicate());
+
+    ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(MAGIC);
+    header.putInt(VERSION);
+    header.putLong(ttp.ttpFile.length());
+    header.putLong(ttp.ttpFile.lastModified());
+    header.putLong(crc.getValue());
+    header.flip();
+
+    File tmp = null;
+    try {
+      File dir = cache.getAbsoluteFile().getParentFile();
+      if (!dir.isDirectory()) dir.mkdirs();
+      tmp = File.createTempFile(cache.getName(), ".tmp", dir);
+
+      try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE)) {
+        while (header.hasRemaining()) ch.write(header);
+        while (data.hasRemaining()) ch.write(data);
+      }
+      try {
+        Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException ex) {
+        Files.move(tmp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException ex) {
+      // caching is optional
+      ex.printStackTrace();
+      if (tmp != null) tmp.delete();
+    }
+  }
+
+
+  // strings are stored as length + UTF-8 bytes, length -1 for null
+  private static byte[] bytes(String s) {
+    return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static void putString(ByteBuffer data, byte[] b) {
+    if (b == null) {
+      data.putInt(-1);
+      return;
+    }
+    data.putInt(b.length);
+    data.put(b);
+  }
+
+  private static String getString(ByteBuffer data) {
+    int len = data.getInt();
+    if (len < 0) return null;
+    byte[] b = new byte[len];
+    data.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private static int[] getInts(ByteBuffer data, int n) {
+    int[] v = new int[n];
+    data.asIntBuffer().get(v);
+    data.position(data.position() + 4 * n);
+    return v;
+  }
+}
@@ -0,0 +1,77 @@
+package ttp;
+
+/**
+ * items per city in CSR form
+ *
+ * the items of city i (0-based) are items[offsets[i]] ..
+ * items[offsets[i+1]-1], in increasing item order. weights and
+ * profits are laid out in the same order, so scanning a city reads
+ * three contiguous ranges:
+ *
+ *   for (int p=cl.start(i); p<cl.end(i); p++) { int j = cl.items[p]; ... cl.weights[p] ... }
+ */
+public class ItemClusters {
+
+  public final int[] offsets;
+  public final int[] items;
+  public final int[] weights;
+  public final int[] profits;
+
+
+  /**
+   * clusters from precomputed offsets and items, weights
+   * and profits are indexed by item
+   */
+  public ItemClusters(int[] offsets, int[] items, int[] weights, int[] profits) {
+    this.offsets = offsets;
+    this.items = items;
+    this.weights = new int[items.length];
+    this.profits = new int[items.length];
+    for (int p = 0; p < items.length; p++) {
+      this.weights[p] = weights[items[p]];
+      this.profits[p] = profits[items[p]];
+    }
+  }
+
+
+  /**
+   * cluster items by city (availability is 1-based)
+   */
+  public static ItemClusters build(int nbCities, int[] availability, int[] weights, int[] profits) {
+
+    int nbItems = availability.length;
+    int[] offsets = new int[nbCities + 1];
+    for (int k = 0; k < nbItems; k++) {
+      offsets[availability[k]]++;
+    }
+    for (int i = 0; i < nbCities; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+
+    int[] next = new int[nbCities];
+    System.arraycopy(offsets, 0, next, 0, nbCities);
+    int[] items = new int[nbItems];
+    for (int k = 0; k < nbItems; k++) {
+      items[next[availability[k] - 1]++] = k;
+    }
+    return new ItemClusters(offsets, items, weights, profits);
+  }
+
+
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  public int start(int i) {
+    return offsets[i];
+  }
+
+  public int end(int i) {
+    return offsets[i+1];
+  }
+
+  // number of items of city i
+  public int size(int i) {
+    return offsets[i+1] - offsets[i];
+  }
+}
@@ -0,0 +1,70 @@
+package ttp;
+
+/**
+ * compact, immutable copy of a TTP solution
+ *
+ * keeps the tour, the picking plan as a bitset (one bit per item)
+ * and the objective values, not the history vectors: 4 bytes per
+ * city and 1 bit per item instead of about 76 bytes per city and
+ * 4 per item for a TTPSolution. toSolution rebuilds a solution
+ * whose history vectors are computed by its next evaluation
+ */
+public final class SolutionSnapshot {
+
+  private final int[] tour;
+  private final long[] picked;
+  // item cities (instance data, shared)
+  private final int[] availability;
+
+  public final long fp;
+  public final double ft;
+  public final double ob;
+  public final long wend;
+
+
+  public SolutionSnapshot(TTPSolution s, TTPInstance ttp) {
+
+    int[] z = s.getPickingPlan();
+    this.tour = s.getTour().clone();
+    this.picked = new long[(z.length + 63) >>> 6];
+    for (int k = 0; k < z.length; k++) {
+      if (z[k] != 0) picked[k >>> 6] |= 1L << k;
+    }
+    this.availability = ttp.getAvailability();
+
+    this.fp = s.fp;
+    this.ft = s.ft;
+    this.ob = s.ob;
+    this.wend = s.wend;
+  }
+
+
+  public boolean isPicked(int k) {
+    return (picked[k >>> 6] & (1L << k)) != 0;
+  }
+
+
+  /**
+   * new solution with the snapshot's tour, picking plan and
+   * objective values, history vectors are not computed yet
+   */
+  public TTPSolution toSolution() {
+
+    int[] z = new int[availability.length];
+    for (int w = 0; w < picked.length; w++) {
+      long bits = picked[w];
+      while (bits != 0) {
+        int k = (w << 6) + Long.numberOfTrailingZeros(bits);
+        z[k] = availability[k];
+        bits &= bits - 1;
+      }
+    }
+
+    TTPSolution s = new TTPSolution(tour.clone(), z);
+    s.fp = fp;
+    s.ft = ft;
+    s.ob = ob;
+    s.wend = wend;
+    return s;
+  }
+}
@@ -1,10 +1,12 @@
 package ttp;
 
 import java.io.*;
+import java.util.Arrays;
 
 import utils.CityCoordinates;
 import utils.ConfigHelper;
 import utils.Deb;
+import utils.Tokenizer;
 
 /**
  * TTP1 instance
@@ -23,6 +25,13 @@ public class TTP1Instance extends TTPInstance {
    */
   protected double rent;
 
+  /**
+   * cross-check incremental evaluations (objectiveFrom,
+   * updateObjective) against full ones, objectivecheck=true
+   * in config.properties
+   */
+  public boolean checkObjective = "true".equals(ConfigHelper.getProperty("objectivecheck"));
+
 
 
   /**
@@ -50,125 +59,117 @@ public class TTP1Instance extends TTPInstance {
     String ttpData = ConfigHelper.getProperty("ttpdata");
 
     this.ttpFile = new File(ttpData+fileName);
-    BufferedReader br = null;
-    
+
+    // binary cache
+    File cache = InstanceCache.cacheFile(this.ttpFile);
+    if (cache != null && InstanceCache.load(this, cache)) {
+      initDistances();
+      return;
+    }
+
+    parse();
+    clusterItems();
+
+    if (cache != null) InstanceCache.store(this, cache);
+  }
+
+
+  /**
+   * parse the .ttp file
+   */
+  private void parse() {
+
     try {
-      br = new BufferedReader(new FileReader(this.ttpFile));
-      String line;
-      
-      while ((line = br.readLine()) != null) {
-        
+      Tokenizer tk = Tokenizer.map(this.ttpFile);
+
+      while (tk.hasMore()) {
+
         // instance name
-        if (line.startsWith("PROBLEM NAME")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          //this.name = line;
+        if (tk.startsWith("PROBLEM NAME")) {
+          tk.value();
+          //this.name = tk.value();
         }
-        
+
         // KP data type
-        if (line.startsWith("KNAPSACK DATA TYPE")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.knapsackDataType = line;
+        else if (tk.startsWith("KNAPSACK DATA TYPE")) {
+          this.knapsackDataType = tk.value();
         }
-        
+
         // number of cities
-        if (line.startsWith("DIMENSION")) {
-          // if (line.startsWith("NUMBER OF NODES")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.nbCities = Integer.parseInt(line);
+        else if (tk.startsWith("DIMENSION")) {
+          // if (tk.startsWith("NUMBER OF NODES")) {
+          this.nbCities = Integer.parseInt(tk.value());
         }
-        
+
         // number of items
-        if (line.startsWith("NUMBER OF ITEMS")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.nbItems = Integer.parseInt(line);
+        else if (tk.startsWith("NUMBER OF ITEMS")) {
+          this.nbItems = Integer.parseInt(tk.value());
         }
-        
+
         // knapsack capacity
-        if (line.startsWith("CAPACITY OF KNAPSACK")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.capacity = Long.parseLong(line);
+        else if (tk.startsWith("CAPACITY OF KNAPSACK")) {
+          this.capacity = Long.parseLong(tk.value());
         }
-        
+
         // minimum velocity
-        if (line.startsWith("MIN SPEED")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.minSpeed = Double.parseDouble(line);
+        else if (tk.startsWith("MIN SPEED")) {
+          this.minSpeed = Double.parseDouble(tk.value());
         }
-        
+
         // maximum velocity
-        if (line.startsWith("MAX SPEED")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.maxSpeed = Double.parseDouble(line);
+        else if (tk.startsWith("MAX SPEED")) {
+          this.maxSpeed = Double.parseDouble(tk.value());
         }
-        
+
         // rent
-        if (line.startsWith("RENTING RATIO")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.rent = Double.parseDouble(line);
+        else if (tk.startsWith("RENTING RATIO")) {
+          this.rent = Double.parseDouble(tk.value());
         }
-        
-      // edge weight
-        if (line.startsWith("EDGE_WEIGHT_TYPE")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          this.edgeWeightType = line;
+
+        // edge weight
+        else if (tk.startsWith("EDGE_WEIGHT_TYPE")) {
+          this.edgeWeightType = tk.value();
         }
-        
+
         // nodes
-        if (line.startsWith("NODE_COORD_SECTION")) {
+        else if (tk.startsWith("NODE_COORD_SECTION")) {
+          tk.skipLine();
+
           // coordinates
           this.coordinates = new CityCoordinates[this.nbCities];
           for (int i=0; i<this.nbCities; i++) {
-            line = br.readLine();
-            String[] parts = line.split("\\s+");
-            this.coordinates[i] = new CityCoordinates(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
-          }
-          
-          // distance matrix
-          if (nbCities < 10000) {
-            this.setDist(new long[this.nbCities][this.nbCities]);
-            for (int i = 0; i < nbCities; i++) {
-              for (int j = 0; j < nbCities; j++) {
-//                getDist()[i][j] = Math.round(this.coordinates[i].distanceEuclid(this.coordinates[j]));
-                getDist()[i][j] = (long)Math.ceil(this.coordinates[i].distanceEuclid(this.coordinates[j]));
-                //System.out.println(this.coord[i] + "&" + this.coord[j] + "->" + dist[i][j]);
-              }
-            }
+            tk.nextInt();
+            double x = tk.nextDouble();
+            double y = tk.nextDouble();
+            this.coordinates[i] = new CityCoordinates(x, y);
           }
+
+          // distances
+          initDistances();
         }
-        
+
         // items
-        if (line.startsWith("ITEMS SECTION")) {
+        else if (tk.startsWith("ITEMS SECTION")) {
+          tk.skipLine();
+
           this.profits = new int[this.nbItems];
           this.weights = new int[this.nbItems];
           this.availability = new int[this.nbItems];
-          
+
           for (int i=0; i<this.nbItems; i++) {
-            line = br.readLine();
-            String[] splittedLine = line.split("\\s+");
-            
-            this.profits[i] = Integer.parseInt(splittedLine[1]);
-            this.weights[i] = Integer.parseInt(splittedLine[2]);
-            this.availability[i] = Integer.parseInt(splittedLine[3]);
+            tk.nextInt();
+            this.profits[i] = tk.nextInt();
+            this.weights[i] = tk.nextInt();
+            this.availability[i] = tk.nextInt();
           }
         }
-        
+
+        tk.skipLine();
       } // end while
-      
-      br.close();
-      
+
     } catch (IOException ex) {
       ex.printStackTrace();
     }
-    clusterItems();
   }
 
 
@@ -183,11 +184,76 @@ public class TTP1Instance extends TTPInstance {
    * @param s the TTP solution
    */
   public void objective(TTPSolution s) {
+    objectiveFrom(s, 0);
+  }
+
+
+  /**
+   * objective function from the first out-of-date
+   * position of the solution (TTPSolution.markDirty)
+   *
+   * @param s the TTP solution
+   */
+  public void updateObjective(TTPSolution s) {
+    objectiveFrom(s, s.firstDirty);
+  }
+
+
+  /**
+   * objective function, re-evaluated from tour position f
+   *
+   * the records of positions 0..f-1 are kept, so the tour and the
+   * picking plan of these cities must not have changed since they
+   * were computed. the picked weight and profit of a city are read
+   * from the solution's per-city aggregates, they are rebuilt from
+   * the picking plan first if it was replaced
+   *
+   * @param s the TTP solution
+   * @param f first modified tour position
+   */
+  public void objectiveFrom(TTPSolution s, int f) {
+
+    boolean maintained = s.aggregated;
+    if (!maintained) aggregate(s);
+
+    if (f < nbCities) evaluate(s, f);
+
+    // incremental records or aggregates
+    if (checkObjective && (f > 0 || maintained)) checkObjective(s);
+  }
+
+
+  /**
+   * picked weight and profit per city
+   */
+  private void aggregate(TTPSolution s) {
 
-    int[] x = s.getTour();
     int[] z = s.getPickingPlan();
+    long[] cw = s.cityWeight;
+    long[] cp = s.cityProfit;
+    Arrays.fill(cw, 0);
+    Arrays.fill(cp, 0);
+
+    for (int k=0; k<nbItems; k++) {
+      if (z[k]!=0) {
+        int c = availability[k]-1;
+        cw[c] += weights[k];
+        cp[c] += profits[k];
+      }
+    }
+    s.aggregated = true;
+  }
+
+
+  /**
+   * records from tour position f (f < nbCities)
+   */
+  private void evaluate(TTPSolution s, int f) {
+
+    int[] x = s.getTour();
+    long[] cw = s.cityWeight;
+    long[] cp = s.cityProfit;
 
-    long[][] D = getDist();
     double C = (maxSpeed-minSpeed)/capacity; // velocity const
     double velocity;
 
@@ -197,32 +263,37 @@ public class TTP1Instance extends TTPInstance {
     double ft = 0;  // tour time
     double ob;      // objective value
 
+    // records before f
+    if (f > 0) {
+      wc = s.weightAcc[f-1];
+      fp = s.profitAcc[f-1];
+      ft = s.timeAcc[f-1];
+    }
 
-    // visit all cities
-    for (int i=0; i<this.nbCities; i++) {
-      acc = 0;
-      // check only items contained in current city
-      for (int j : clusters[ x[i]-1 ]) {
-        if (z[j]!=0) {
-          fp += profits[j];
-          acc += weights[j];
-        }
-      }
+    // visit all cities from f
+    for (int i=f; i<this.nbCities; i++) {
+      // items picked in current city
+      int c = x[i]-1;
+      acc = cw[c];
+      fp += cp[c];
 
       wc += acc;
       velocity = maxSpeed - wc*C;
 
       int h = (i+1)%nbCities;
-      ft += distFor(x[i]-1,x[h]-1) / velocity;
+      long d = distFor(c, x[h]-1);
+      ft += d / velocity;
 
       // record important data for future use
       s.timeAcc[i] = ft;
-      s.timeRec[i] = distFor(x[i]-1, x[h]-1) / velocity;
+      s.timeRec[i] = d / velocity;
+      s.legDist[i] = d;
       s.weightAcc[i] = wc;
       s.weightRec[i] = acc;
+      s.profitAcc[i] = fp;
 
       // map indices to their associated cities
-      s.mapCI[x[i]-1] = i;
+      s.mapCI[c] = i;
     }
 
     ob = fp - ft*rent;
@@ -232,9 +303,37 @@ public class TTP1Instance extends TTPInstance {
     s.ft = ft;
     s.wend = capacity-wc;
     s.ob = ob;
+    s.firstDirty = nbCities;
   }
 
 
+  /**
+   * compare the aggregates and the records
+   * of s with a full evaluation
+   */
+  private void checkObjective(TTPSolution s) {
+
+    TTPSolution r = new TTPSolution(s.getTour(), s.getPickingPlan());
+    aggregate(r);
+    evaluate(r, 0);
+
+    for (int i=0; i<nbCities; i++) {
+      if (s.cityWeight[i] != r.cityWeight[i] || s.cityProfit[i] != r.cityProfit[i]) {
+        throw new IllegalStateException("picked items of city " + (i+1) + " out of date");
+      }
+    }
+    for (int i=0; i<nbCities; i++) {
+      if (s.weightAcc[i] != r.weightAcc[i] || s.profitAcc[i] != r.profitAcc[i] ||
+          s.weightRec[i] != r.weightRec[i] || s.legDist[i] != r.legDist[i] ||
+          s.mapCI[i] != r.mapCI[i] ||
+          Math.abs(s.timeAcc[i] - r.timeAcc[i]) > 1e-9 * Math.max(1, r.timeAcc[i])) {
+        throw new IllegalStateException("incremental objective: records differ at position " + i);
+      }
+    }
+    if (s.fp != r.fp || s.wend != r.wend || Math.abs(s.ob - r.ob) > 1e-9 * Math.max(1, Math.abs(r.ob))) {
+      throw new IllegalStateException("incremental objective: " + s.ob + " instead of " + r.ob);
+    }
+  }
 
 
 }
@@ -2,9 +2,9 @@ package ttp;
 
 import java.io.*;
 import java.nio.file.Files;
-import java.util.ArrayList;
 
 import utils.CityCoordinates;
+import utils.ConfigHelper;
 import utils.Deb;
 import utils.Log;
 
@@ -27,15 +27,18 @@ public abstract class TTPInstance {
   protected double maxSpeed;
   protected String edgeWeightType;
   protected CityCoordinates[] coordinates;
-  protected long[][] dist = null;
+  protected DistanceOracle distances;
   protected int[] availability;
   protected int[] profits;
   protected int[] weights;
   
   protected File ttpFile;
 
+  // share of the heap a dense distance matrix may use
+  public static final double DENSE_BUDGET = .125;
+
   // item clusters per city
-  protected ArrayList<Integer>[] clusters;
+  protected ItemClusters clusters;
 
   @Override
   public String toString() {
@@ -52,7 +55,7 @@ public abstract class TTPInstance {
       s += "distance matrix:\n";
       for (int i=0; i<this.nbCities; i++) {
         for (int j=0; j<this.nbCities; j++) {
-          s += String.format("%5d", this.getDist()[i][j]);
+          s += String.format("%5d", this.distFor(i, j));
         }
         s += "\n";
       }
@@ -92,10 +95,6 @@ public abstract class TTPInstance {
     return s;
   }
   
-  public void setDist(long[][] dist) {
-    this.dist = dist;
-  }
-
   public String getTspName() {
     return tspName;
   }
@@ -105,8 +104,8 @@ public abstract class TTPInstance {
   public String getName() {
     return name;
   }
-  public long[][] getDist() {
-    return dist;
+  public DistanceOracle getDistances() {
+    return distances;
   }
   public int[] getAvailability() {
     return availability;
@@ -132,7 +131,7 @@ public abstract class TTPInstance {
   public long getCapacity() {
     return capacity;
   }
-  public ArrayList<Integer>[] getClusters() {
+  public ItemClusters getClusters() {
     return clusters;
   }
   public CityCoordinates[] getCoordinates() {
@@ -146,13 +145,51 @@ public abstract class TTPInstance {
     return this.weights[i];
   }
 
-  // used to simulate the distance matrix
+  // distance between cities i and j (0-based)
   public long distFor(int i, int j) {
-    if (dist==null) {
-//      return Math.round(this.coordinates[i].distanceEuclid(this.coordinates[j]));
-      return (long)Math.ceil(this.coordinates[i].distanceEuclid(this.coordinates[j]));
+    return distances.dist(i, j);
+  }
+
+  /**
+   * choose the distance oracle
+   *
+   * a dense int matrix when it fits in DENSE_BUDGET of the
+   * heap, distances computed from flat coordinate arrays
+   * otherwise. the `distances` property (dense|euclid)
+   * forces a strategy
+   */
+  protected void initDistances() {
+
+    double[] xs = new double[nbCities];
+    double[] ys = new double[nbCities];
+    double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i=0; i<nbCities; i++) {
+      xs[i] = coordinates[i].getX();
+      ys[i] = coordinates[i].getY();
+      minX = Math.min(minX, xs[i]);
+      maxX = Math.max(maxX, xs[i]);
+      minY = Math.min(minY, ys[i]);
+      maxY = Math.max(maxY, ys[i]);
+    }
+
+    // matrix entries are ints
+    boolean fits = Math.hypot(maxX-minX, maxY-minY) < Integer.MAX_VALUE
+      && (long) nbCities * nbCities < Integer.MAX_VALUE;
+
+    String forced = ConfigHelper.getProperty("distances");
+    boolean dense;
+    if ("dense".equals(forced)) {
+      dense = fits;
+    }
+    else if ("euclid".equals(forced)) {
+      dense = false;
+    }
+    else {
+      dense = fits && 4.0 * nbCities * nbCities <= DENSE_BUDGET * Runtime.getRuntime().maxMemory();
     }
-    return dist[i][j];
+
+    distances = dense ? new DenseDistances(xs, ys) : new EuclidDistances(xs, ys);
   }
 
 
@@ -160,18 +197,15 @@ public abstract class TTPInstance {
    * organize items per city
    */
   public void clusterItems() {
+    clusters = ItemClusters.build(nbCities, availability, weights, profits);
+  }
 
-    clusters = new ArrayList[nbCities];
-    int i;
-
-    // init cluster arrays
-    for (i=0; i<nbCities; i++) {
-      clusters[i] = new ArrayList<>();
-    }
-    // fill clusters
-    for (i=0; i<nbItems; i++) {
-      clusters[ availability[i]-1 ].add(i);
-    }
+  /**
+   * organize items per city from precomputed
+   * clusters: items[offsets[i]..offsets[i+1]-1]
+   */
+  public void clusterItems(int[] offsets, int[] items) {
+    clusters = new ItemClusters(offsets, items, weights, profits);
   }
 
 }
@@ -1,10 +1,10 @@
 package ttp;
 
 import utils.Deb;
+import utils.HashHelper;
+import utils.Tokenizer;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.Arrays;
 
@@ -38,6 +38,28 @@ public class TTPSolution {
   public long[] weightRec;
   // tour mapper
   public int[] mapCI;
+  // tour leg lengths (leg i goes from tour[i] to tour[i+1])
+  public long[] legDist;
+  // profit accumulator
+  public long[] profitAcc;
+
+  // picked weight and profit per city (city i+1 at index i),
+  // kept up to date by flip, rebuilt by the objective function
+  // after the picking plan is replaced
+  public long[] cityWeight;
+  public long[] cityProfit;
+  boolean aggregated;
+
+  // first tour position whose records may be out of date,
+  // tour.length if all records match tour and picking plan
+  int firstDirty;
+
+  // items flipped since the last checkpoint (undo log), replaced
+  // by their flip parity (one bit per item) once the log would be
+  // larger. nbFlips is -1 without a checkpoint
+  private int[] flipLog;
+  private long[] flipParity;
+  private int nbFlips = -1;
 
 
   private void initSolution(int[] tour, int[] pickingPlan) {
@@ -50,6 +72,10 @@ public class TTPSolution {
     this.weightAcc = new long[this.tour.length];
     this.weightRec = new long[this.tour.length];
     this.mapCI = new int[this.tour.length];
+    this.legDist = new long[this.tour.length];
+    this.profitAcc = new long[this.tour.length];
+    this.cityWeight = new long[this.tour.length];
+    this.cityProfit = new long[this.tour.length];
   }
 
   public TTPSolution() {
@@ -71,6 +97,10 @@ public class TTPSolution {
     weightAcc = new long[tour.length];
     weightRec = new long[tour.length];
     mapCI = new int[tour.length];
+    legDist = new long[tour.length];
+    profitAcc = new long[tour.length];
+    cityWeight = new long[tour.length];
+    cityProfit = new long[tour.length];
   }
   
   public TTPSolution(TTPSolution s2) {
@@ -88,53 +118,54 @@ public class TTPSolution {
     this.weightAcc = Arrays.copyOf(s2.weightAcc,s2.weightAcc.length);
     this.weightRec = Arrays.copyOf(s2.weightRec,s2.weightRec.length);
     this.mapCI = Arrays.copyOf(s2.mapCI,s2.mapCI.length);
+    this.legDist = Arrays.copyOf(s2.legDist,s2.legDist.length);
+    this.profitAcc = Arrays.copyOf(s2.profitAcc,s2.profitAcc.length);
+    this.cityWeight = Arrays.copyOf(s2.cityWeight,s2.cityWeight.length);
+    this.cityProfit = Arrays.copyOf(s2.cityProfit,s2.cityProfit.length);
+    this.aggregated = s2.aggregated;
+    this.firstDirty = s2.firstDirty;
   }
   
   public TTPSolution(String filePath) {
     File solFile = new File(filePath);
-    BufferedReader br = null;
 
     int nbCities = 0, nbItems = 0;
 
     try {
-      br = new BufferedReader(new FileReader(solFile));
-      String line;
+      Tokenizer tk = Tokenizer.map(solFile);
 
       // scan tour
-      while ((line = br.readLine()) != null) {
+      while (tk.hasMore()) {
 
         // number of cities
-        if (line.startsWith("DIMENSION")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          nbCities = Integer.parseInt(line);
+        if (tk.startsWith("DIMENSION")) {
+          nbCities = Integer.parseInt(tk.value());
         }
 
         // number of items
-        if (line.startsWith("NUMBER OF ITEMS")) {
-          line = line.substring(line.indexOf(":")+1);
-          line = line.replaceAll("\\s+","");
-          nbItems = Integer.parseInt(line);
+        else if (tk.startsWith("NUMBER OF ITEMS")) {
+          nbItems = Integer.parseInt(tk.value());
         }
 
-        if (line.startsWith("TOUR_SECTION")) {
+        else if (tk.startsWith("TOUR_SECTION")) {
+          tk.skipLine();
           this.tour = new int[nbCities];
           for (int j=0; j<nbCities; j++) {
-            line = br.readLine();
-            tour[j] = Integer.parseInt(line);
+            tour[j] = tk.nextInt();
           }
         }
 
-        if (line.startsWith("PP_SECTION")) {
+        else if (tk.startsWith("PP_SECTION")) {
+          tk.skipLine();
           this.pickingPlan = new int[nbItems];
           for (int j=0; j<nbItems; j++) {
-            line = br.readLine();
-            pickingPlan[j] = Integer.parseInt(line);
+            pickingPlan[j] = tk.nextInt();
           }
         }
+
+        tk.skipLine();
       } // end while
 
-      br.close();
     } catch (IOException ex) {
       ex.printStackTrace();
     }
@@ -165,6 +196,39 @@ public class TTPSolution {
   public TTPSolution clone() {
     return new TTPSolution(this);
   }
+
+  /**
+   * copy this solution into target, records included, without
+   * allocating: target must have as many cities and items.
+   * target's checkpoint is dropped
+   */
+  public void copyInto(TTPSolution target) {
+    if (target.tour.length != tour.length || target.pickingPlan.length != pickingPlan.length) {
+      throw new IllegalArgumentException("copyInto: " + target.tour.length + " cities, " +
+        target.pickingPlan.length + " items instead of " + tour.length + ", " + pickingPlan.length);
+    }
+    int n = tour.length;
+    System.arraycopy(tour, 0, target.tour, 0, n);
+    System.arraycopy(pickingPlan, 0, target.pickingPlan, 0, pickingPlan.length);
+
+    target.fp = fp;
+    target.ft = ft;
+    target.ob = ob;
+    target.wend = wend;
+
+    System.arraycopy(timeAcc, 0, target.timeAcc, 0, n);
+    System.arraycopy(timeRec, 0, target.timeRec, 0, n);
+    System.arraycopy(weightAcc, 0, target.weightAcc, 0, n);
+    System.arraycopy(weightRec, 0, target.weightRec, 0, n);
+    System.arraycopy(mapCI, 0, target.mapCI, 0, n);
+    System.arraycopy(legDist, 0, target.legDist, 0, n);
+    System.arraycopy(profitAcc, 0, target.profitAcc, 0, n);
+    System.arraycopy(cityWeight, 0, target.cityWeight, 0, n);
+    System.arraycopy(cityProfit, 0, target.cityProfit, 0, n);
+    target.aggregated = aggregated;
+    target.firstDirty = firstDirty;
+    target.dropCheckpoint();
+  }
   
   @Override
   public boolean equals(Object o2) {
@@ -180,6 +244,13 @@ public class TTPSolution {
     
     return true;
   }
+
+  // consistent with equals: fingerprint of tour and picking plan
+  @Override
+  public int hashCode() {
+    long h = HashHelper.of(this);
+    return (int) (h ^ (h >>> 32));
+  }
   
   // getters
   public int[] getTour() {
@@ -192,9 +263,143 @@ public class TTPSolution {
   // setters
   public void setTour(int[] tour) {
     this.tour = tour;
+    this.firstDirty = 0;
   }
   public void setPickingPlan(int[] pickingPlan) {
     this.pickingPlan = pickingPlan;
+    this.aggregated = false;
+    this.firstDirty = 0;
+    dropCheckpoint();
+  }
+
+
+  /**
+   * pick item k if it is not picked, drop it otherwise
+   *
+   * the per-city aggregates are updated and the position of
+   * the item's city is marked dirty. the picking plan must
+   * only be modified through flip and clearPickingPlan
+   */
+  public void flip(int k, TTPInstance ttp) {
+    int c = ttp.getAvailability()[k] - 1;
+    int w = ttp.weightOf(k);
+    int p = ttp.profitOf(k);
+    if (pickingPlan[k] == 0) {
+      pickingPlan[k] = c + 1;
+    }
+    else {
+      pickingPlan[k] = 0;
+      w = -w;
+      p = -p;
+    }
+    cityWeight[c] += w;
+    cityProfit[c] += p;
+    markDirty(mapCI[c]);
+
+    if (nbFlips >= 0) logFlip(k);
+  }
+
+  // log item k, or toggle its parity
+  private void logFlip(int k) {
+    if (flipLog != null && nbFlips == flipLog.length) {
+      // the log grows up to the size of the parity bitset
+      int words = (pickingPlan.length + 63) >>> 6;
+      if (nbFlips < 2 * words) {
+        flipLog = Arrays.copyOf(flipLog, Math.min(2 * nbFlips, 2 * words));
+      }
+      else {
+        // an item flipped twice cancels out
+        flipParity = new long[words];
+        for (int i = 0; i < nbFlips; i++) flipParity[flipLog[i] >>> 6] ^= 1L << flipLog[i];
+        flipLog = null;
+      }
+    }
+    if (flipLog != null) flipLog[nbFlips] = k;
+    else flipParity[k >>> 6] ^= 1L << k;
+    nbFlips++;
+  }
+
+  /**
+   * drop all items
+   */
+  public void clearPickingPlan() {
+    Arrays.fill(pickingPlan, 0);
+    Arrays.fill(cityWeight, 0);
+    Arrays.fill(cityProfit, 0);
+    aggregated = true;
+    firstDirty = 0;
+    dropCheckpoint();
+  }
+
+
+  /**
+   * start logging flips: rollback restores the current picking
+   * plan. the log (or parity bitset) of the previous checkpoint
+   * is reused, it never takes more than the bitset's nbItems/8
+   * bytes, so repeated checkpoints do not allocate
+   */
+  public void checkpoint() {
+    if (flipParity != null) Arrays.fill(flipParity, 0);
+    else if (flipLog == null) flipLog = new int[Math.min(64, 2 * ((pickingPlan.length + 63) >>> 6))];
+    nbFlips = 0;
+  }
+
+  /**
+   * undo the flips since the last checkpoint, the checkpoint is
+   * kept. records are out of date from the first flipped city
+   * on (TTP1Instance.updateObjective)
+   */
+  public void rollback(TTPInstance ttp) {
+    if (nbFlips < 0) {
+      throw new IllegalStateException("rollback without checkpoint");
+    }
+    int m = nbFlips;
+    nbFlips = -1;
+    if (flipParity != null) {
+      // flips commute: odd counts in item order
+      for (int w = 0; w < flipParity.length; w++) {
+        long bits = flipParity[w];
+        while (bits != 0) {
+          flip((w << 6) + Long.numberOfTrailingZeros(bits), ttp);
+          bits &= bits - 1;
+        }
+      }
+    }
+    else {
+      for (int i = m - 1; i >= 0; i--) {
+        flip(flipLog[i], ttp);
+      }
+    }
+    checkpoint();
+  }
+
+  /**
+   * stop logging flips, the log is released
+   */
+  public void dropCheckpoint() {
+    nbFlips = -1;
+    flipLog = null;
+    flipParity = null;
+  }
+
+  // flips since the last checkpoint, -1 without checkpoint
+  public int getNbFlips() {
+    return nbFlips;
+  }
+
+
+  /**
+   * the tour from position i on, or the picking plan of its
+   * cities, was modified: records from i on are out of date
+   * (TTP1Instance.updateObjective)
+   */
+  public void markDirty(int i) {
+    if (i < firstDirty) firstDirty = i;
+  }
+
+  // first position whose records are out of date
+  public int getFirstDirty() {
+    return firstDirty;
   }
 
 
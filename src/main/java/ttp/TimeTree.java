@@ -0,0 +1,362 @@
+package ttp;
+
+/**
+ * travel time tree
+ *
+ * segment tree over the tour legs, used to evaluate the
+ * travel time of a tour range when the knapsack weight
+ * changes uniformly on it (bit-flip) without walking the legs
+ *
+ * each node stores the moments M_k = sum d*(v-c)^k of its legs,
+ * where d is the leg distance, v the leg velocity and c the
+ * center of the node's velocity range. picking an item shifts
+ * all velocities of the tour suffix by -C*w, which only moves
+ * the centers (exact lazy update), and the time of a node
+ * sum d/(v+s) is recovered with the series
+ * sum (-1)^k M_k/(c+s)^(k+1) whenever it converges fast enough,
+ * the legs are summed exactly otherwise.
+ * the same moments give the time of a reversed range
+ * sum d/(sigma-v) with the alternating signs dropped
+ */
+public class TimeTree {
+
+  // number of series terms
+  public static final int ORDER = 12;
+  // maximal ratio (half range)/(center) to use the series
+  public static final double RHO = .15;
+  // number of legs per leaf
+  private static final int BUCKET = 8;
+
+  // binomial coefficients used to re-center moments
+  private static final double[][] BINOM = new double[ORDER][ORDER];
+  static {
+    for (int k=0; k<ORDER; k++) {
+      BINOM[k][0] = BINOM[k][k] = 1;
+      for (int m=1; m<k; m++) {
+        BINOM[k][m] = BINOM[k-1][m-1] + BINOM[k-1][m];
+      }
+    }
+  }
+
+  private final double maxSpeed;
+  private final double C;
+
+  private final int nbLegs;
+  private final int nbLeaves;
+
+  // leg distances and velocities (leaf tags excluded)
+  private final double[] d;
+  private final double[] v;
+
+  // node data: velocity range, pending shift and moments
+  private final double[] lo;
+  private final double[] hi;
+  private final double[] tag;
+  private final double[] mom;
+
+  // re-centering buffer
+  private final double[] pw = new double[ORDER];
+
+
+  public TimeTree(TTPInstance ttp) {
+    this.maxSpeed = ttp.getMaxSpeed();
+    this.C = (ttp.getMaxSpeed() - ttp.getMinSpeed()) / ttp.getCapacity();
+
+    this.nbLegs = ttp.getNbCities();
+    int leaves = 1;
+    while (leaves * BUCKET < nbLegs) leaves <<= 1;
+    this.nbLeaves = leaves;
+
+    this.d = new double[nbLegs];
+    this.v = new double[nbLegs];
+    this.lo = new double[2*nbLeaves];
+    this.hi = new double[2*nbLeaves];
+    this.tag = new double[2*nbLeaves];
+    this.mom = new double[2*nbLeaves*ORDER];
+  }
+
+
+  /**
+   * load the tour legs of an evaluated solution
+   *
+   * uses the leg lengths and the weight accumulator,
+   * so the solution's history vectors must be up to date
+   */
+  public void build(TTPSolution s) {
+
+    for (int r=0; r<nbLegs; r++) {
+      d[r] = s.legDist[r];
+      v[r] = maxSpeed - s.weightAcc[r]*C;
+    }
+
+    for (int leaf=0; leaf<nbLeaves; leaf++) {
+      computeLeaf(nbLeaves + leaf);
+    }
+    for (int node=nbLeaves-1; node>0; node--) {
+      tag[node] = 0;
+      pull(node);
+    }
+  }
+
+
+  /**
+   * change of the travel time between tour index `from`
+   * and the end of the tour when the carried weight
+   * is increased by deltaW on this part of the tour
+   */
+  public double delta(int from, long deltaW) {
+    return delta(1, 0, nbLeaves, from, -deltaW*C, 0);
+  }
+
+
+  /**
+   * commit a weight change of deltaW on all legs
+   * from tour index `from` to the end of the tour
+   */
+  public void shift(int from, long deltaW) {
+    shift(1, 0, nbLeaves, from, -deltaW*C);
+  }
+
+
+  /**
+   * travel time of the legs from..to (inclusive)
+   * when their velocities are shifted by s
+   */
+  public double time(int from, int to, double s) {
+    return time(1, 0, nbLeaves, from, to, s);
+  }
+
+
+  /**
+   * travel time of the legs from..to (inclusive) when their
+   * velocities v are mirrored to sigma - v
+   *
+   * a 2-opt move reversing tour[i..j] runs leg r (i <= r < j)
+   * backwards at velocity v[i-1] + v[j] - v[r]
+   */
+  public double reversedTime(int from, int to, double sigma) {
+    return reversedTime(1, 0, nbLeaves, from, to, sigma, 0);
+  }
+
+
+  //===================================
+  // tree internals
+  //===================================
+
+  private boolean empty(int node) {
+    return lo[node] > hi[node];
+  }
+
+  private int legStart(int leaf) {
+    return (leaf - nbLeaves) * BUCKET;
+  }
+
+  private int legEnd(int leaf) {
+    return Math.min(nbLegs, (leaf - nbLeaves + 1) * BUCKET);
+  }
+
+  // recompute leaf data from its legs
+  private void computeLeaf(int leaf) {
+
+    int start = legStart(leaf), end = legEnd(leaf);
+    int base = leaf*ORDER;
+    tag[leaf] = 0;
+    for (int k=0; k<ORDER; k++) mom[base+k] = 0;
+
+    if (start >= end) {
+      lo[leaf] = Double.POSITIVE_INFINITY;
+      hi[leaf] = Double.NEGATIVE_INFINITY;
+      return;
+    }
+
+    double vmin = v[start], vmax = v[start];
+    for (int r=start+1; r<end; r++) {
+      if (v[r] < vmin) vmin = v[r];
+      if (v[r] > vmax) vmax = v[r];
+    }
+    lo[leaf] = vmin;
+    hi[leaf] = vmax;
+
+    double c = (vmin + vmax) / 2;
+    for (int r=start; r<end; r++) {
+      double p = d[r], x = v[r] - c;
+      for (int k=0; k<ORDER; k++) {
+        mom[base+k] += p;
+        p *= x;
+      }
+    }
+  }
+
+  // merge children moments around the node's center
+  private void pull(int node) {
+
+    int a = 2*node, b = 2*node+1;
+    int base = node*ORDER;
+    for (int k=0; k<ORDER; k++) mom[base+k] = 0;
+
+    lo[node] = Math.min(lo[a], lo[b]);
+    hi[node] = Math.max(hi[a], hi[b]);
+    if (empty(node)) return;
+
+    double c = (lo[node] + hi[node]) / 2;
+    recenter(a, c, base);
+    if (!empty(b)) recenter(b, c, base);
+  }
+
+  // add child moments, moved to center c, to mom[base..]
+  private void recenter(int child, double c, int base) {
+
+    int cb = child*ORDER;
+    double delta = (lo[child] + hi[child]) / 2 - c;
+
+    pw[0] = 1;
+    for (int k=1; k<ORDER; k++) pw[k] = pw[k-1] * delta;
+
+    for (int k=0; k<ORDER; k++) {
+      double sum = 0;
+      for (int m=0; m<=k; m++) {
+        sum += BINOM[k][m] * pw[k-m] * mom[cb+m];
+      }
+      mom[base+k] += sum;
+    }
+  }
+
+  // shift the velocities of a whole node
+  private void apply(int node, double s) {
+    if (empty(node)) return;
+    lo[node] += s;
+    hi[node] += s;
+    tag[node] += s;
+  }
+
+  // propagate the pending shift one level down
+  private void push(int node) {
+    if (tag[node] == 0) return;
+    if (node >= nbLeaves) {
+      for (int r=legStart(node); r<legEnd(node); r++) v[r] += tag[node];
+    }
+    else {
+      apply(2*node, tag[node]);
+      apply(2*node+1, tag[node]);
+    }
+    tag[node] = 0;
+  }
+
+  private void shift(int node, int l, int r, int from, double s) {
+
+    int start = l*BUCKET, end = Math.min(nbLegs, r*BUCKET);
+    if (end <= from || start >= end) return;
+
+    // whole node shifted
+    if (start >= from) {
+      apply(node, s);
+      return;
+    }
+
+    push(node);
+    if (node >= nbLeaves) {
+      for (int q=from; q<end; q++) v[q] += s;
+      computeLeaf(node);
+      return;
+    }
+
+    int mid = (l + r) / 2;
+    shift(2*node, l, mid, from, s);
+    shift(2*node+1, mid, r, from, s);
+    pull(node);
+  }
+
+  // sum d/(v+A+s) - d/(v+A) on legs >= from
+  private double delta(int node, int l, int r, int from, double s, double A) {
+
+    int start = l*BUCKET, end = Math.min(nbLegs, r*BUCKET);
+    if (end <= from || start >= end) return 0;
+
+    if (start >= from) {
+      double c = (lo[node] + hi[node]) / 2 + A;
+      double h = (hi[node] - lo[node]) / 2;
+      double e = Math.min(c, c+s);
+      if (e > 0 && h <= RHO*e) {
+        return series(node, c+s, -1) - series(node, c, -1);
+      }
+    }
+
+    A += tag[node];
+    if (node >= nbLeaves) {
+      double sum = 0;
+      for (int q=Math.max(from, start); q<end; q++) {
+        sum += d[q] / (v[q] + A + s) - d[q] / (v[q] + A);
+      }
+      return sum;
+    }
+
+    int mid = (l + r) / 2;
+    return delta(2*node, l, mid, from, s, A) + delta(2*node+1, mid, r, from, s, A);
+  }
+
+  // sum d/(v+A+s) on legs from..to
+  private double time(int node, int l, int r, int from, int to, double s) {
+
+    int start = l*BUCKET, end = Math.min(nbLegs, r*BUCKET);
+    if (end <= from || start > to || start >= end) return 0;
+
+    if (start >= from && end-1 <= to) {
+      double e = (lo[node] + hi[node]) / 2 + s;
+      double h = (hi[node] - lo[node]) / 2;
+      if (e > 0 && h <= RHO*e) {
+        return series(node, e, -1);
+      }
+    }
+
+    s += tag[node];
+    if (node >= nbLeaves) {
+      double sum = 0;
+      for (int q=Math.max(from, start); q<Math.min(end, to+1); q++) {
+        sum += d[q] / (v[q] + s);
+      }
+      return sum;
+    }
+
+    int mid = (l + r) / 2;
+    return time(2*node, l, mid, from, to, s) + time(2*node+1, mid, r, from, to, s);
+  }
+
+  // sum d/(sigma-(v+A)) on legs from..to
+  private double reversedTime(int node, int l, int r, int from, int to, double sigma, double A) {
+
+    int start = l*BUCKET, end = Math.min(nbLegs, r*BUCKET);
+    if (end <= from || start > to || start >= end) return 0;
+
+    if (start >= from && end-1 <= to) {
+      double e = sigma - (lo[node] + hi[node]) / 2 - A;
+      double h = (hi[node] - lo[node]) / 2;
+      if (e > 0 && h <= RHO*e) {
+        return series(node, e, 1);
+      }
+    }
+
+    A += tag[node];
+    if (node >= nbLeaves) {
+      double sum = 0;
+      for (int q=Math.max(from, start); q<Math.min(end, to+1); q++) {
+        sum += d[q] / (sigma - v[q] - A);
+      }
+      return sum;
+    }
+
+    int mid = (l + r) / 2;
+    return reversedTime(2*node, l, mid, from, to, sigma, A)
+      + reversedTime(2*node+1, mid, r, from, to, sigma, A);
+  }
+
+  // sum_k (sgn/e)^k M_k / e
+  private double series(int node, double e, int sgn) {
+    int base = node*ORDER;
+    double t = sgn / e, p = 1 / e, sum = 0;
+    for (int k=0; k<ORDER; k++) {
+      sum += mom[base+k] * p;
+      p *= t;
+    }
+    return sum;
+  }
+}
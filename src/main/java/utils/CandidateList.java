@@ -0,0 +1,163 @@
+package utils;
+
+import ttp.TTPInstance;
+
+import java.util.Arrays;
+
+/**
+ * candidate lists
+ *
+ * compact neighbor lists stored in CSR form: the candidates
+ * of city i are nodes[offsets[i]] .. nodes[offsets[i+1]-1],
+ * sorted by increasing distance (ties by city index), the city
+ * itself excluded. iterate them with
+ *
+ *   for (int p=cl.start(i); p<cl.end(i); p++) { int j = cl.nodes[p]; ... }
+ */
+public class CandidateList {
+
+  public final int[] offsets;
+  public final int[] nodes;
+
+
+  public CandidateList(int[] offsets, int[] nodes) {
+    this.offsets = offsets;
+    this.nodes = nodes;
+  }
+
+
+  public int size() {
+    return offsets.length - 1;
+  }
+
+  public int start(int i) {
+    return offsets[i];
+  }
+
+  public int end(int i) {
+    return offsets[i+1];
+  }
+
+  public int degree(int i) {
+    return offsets[i+1] - offsets[i];
+  }
+
+  /**
+   * candidates of city i as a new array
+   */
+  public int[] of(int i) {
+    return Arrays.copyOfRange(nodes, offsets[i], offsets[i+1]);
+  }
+
+
+  /**
+   * build from an undirected edge list
+   *
+   * edges (e1[k], e2[k]) for k < nbEdges, duplicates and
+   * self loops are dropped, rows are sorted by distance
+   */
+  public static CandidateList fromEdges(TTPInstance ttp, int[] e1, int[] e2, int nbEdges) {
+
+    int nbCities = ttp.getNbCities();
+
+    // count degrees
+    int[] offsets = new int[nbCities+1];
+    for (int k=0; k<nbEdges; k++) {
+      if (e1[k] == e2[k]) continue;
+      offsets[e1[k]+1]++;
+      offsets[e2[k]+1]++;
+    }
+    for (int i=0; i<nbCities; i++) {
+      offsets[i+1] += offsets[i];
+    }
+
+    // fill rows
+    int[] fill = Arrays.copyOf(offsets, nbCities);
+    int[] nodes = new int[offsets[nbCities]];
+    for (int k=0; k<nbEdges; k++) {
+      if (e1[k] == e2[k]) continue;
+      nodes[fill[e1[k]]++] = e2[k];
+      nodes[fill[e2[k]]++] = e1[k];
+    }
+
+    return sortRows(ttp, offsets, nodes);
+  }
+
+
+  /**
+   * k'th level neighborhood: all cities reachable
+   * from i within k edges of the candidate graph
+   */
+  public CandidateList expand(TTPInstance ttp, int k) {
+
+    int nbCities = size();
+    int[] stamp = new int[nbCities];
+    Arrays.fill(stamp, -1);
+    int[] queue = new int[nbCities];
+
+    int[] offs = new int[nbCities+1];
+    int[] buf = new int[Math.max(16, nodes.length)];
+    int len = 0;
+
+    for (int i=0; i<nbCities; i++) {
+
+      // breadth first search up to depth k
+      stamp[i] = i;
+      int head = 0, tail = 0;
+      queue[tail++] = i;
+      for (int level=0; level<k && head<tail; level++) {
+        int levelEnd = tail;
+        while (head < levelEnd) {
+          int x = queue[head++];
+          for (int p=offsets[x]; p<offsets[x+1]; p++) {
+            int y = nodes[p];
+            if (stamp[y] == i) continue;
+            stamp[y] = i;
+            queue[tail++] = y;
+          }
+        }
+      }
+
+      // store row, the city itself excluded
+      if (len + tail > buf.length) {
+        buf = Arrays.copyOf(buf, Math.max(2*buf.length, len + tail));
+      }
+      System.arraycopy(queue, 1, buf, len, tail-1);
+      len += tail-1;
+      offs[i+1] = len;
+    }
+
+    return sortRows(ttp, offs, Arrays.copyOf(buf, len));
+  }
+
+
+  // sort each row by distance and remove duplicates
+  private static CandidateList sortRows(TTPInstance ttp, int[] offsets, int[] nodes) {
+
+    int nbCities = offsets.length - 1;
+    long[] keys = new long[16];
+    int len = 0;
+
+    for (int i=0; i<nbCities; i++) {
+      int start = offsets[i], end = offsets[i+1];
+      int deg = end - start;
+      if (deg > keys.length) keys = new long[Math.max(deg, 2*keys.length)];
+
+      // distance in the high bits, city in the low bits
+      for (int p=start; p<end; p++) {
+        long d = Math.min(ttp.distFor(i, nodes[p]), Integer.MAX_VALUE);
+        keys[p-start] = (d << 32) | nodes[p];
+      }
+      Arrays.sort(keys, 0, deg);
+
+      offsets[i] = len;
+      for (int p=0; p<deg; p++) {
+        if (p > 0 && keys[p] == keys[p-1]) continue;
+        nodes[len++] = (int) keys[p];
+      }
+    }
+    offsets[nbCities] = len;
+
+    return new CandidateList(offsets, len == nodes.length ? nodes : Arrays.copyOf(nodes, len));
+  }
+}
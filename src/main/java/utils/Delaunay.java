@@ -0,0 +1,618 @@
+package utils;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * in-process Delaunay triangulation
+ *
+ * sweep-hull algorithm (port of the Delaunator library): points
+ * are inserted by increasing distance to the circumcenter of a
+ * seed triangle, each one is connected to the visible part of the
+ * convex hull, then edges are flipped until the Delaunay
+ * condition holds. runs in O(n log n) on usual inputs
+ *
+ * orientation and in-circle tests are exact: the floating point
+ * result is used when it is provably correct, the determinant is
+ * recomputed with big integers otherwise. duplicated points are
+ * triangulated once, the copies are connected to their twin
+ */
+public class Delaunay {
+
+  private final double[] xs;
+  private final double[] ys;
+  private final int n;
+
+  // triangles (3 vertices each) and their half-edge adjacency
+  private int[] triangles;
+  private int[] halfedges;
+  private int trianglesLen;
+
+  // convex hull as a doubly linked list with an angular hash
+  private int[] hullPrev;
+  private int[] hullNext;
+  private int[] hullTri;
+  private int[] hullHash;
+  private int hullStart;
+  private int hashSize;
+  private double cx, cy;
+
+  // edges to check while legalizing
+  private int[] edgeStack = new int[512];
+
+  // resulting edges
+  private int[] e1;
+  private int[] e2;
+  private int nbEdges;
+
+
+  private Delaunay(double[] xs, double[] ys) {
+    this.xs = xs;
+    this.ys = ys;
+    this.n = xs.length;
+  }
+
+
+  /**
+   * edges of the Delaunay triangulation of (xs[i], ys[i])
+   *
+   * @return {e1, e2}, the edge k joins e1[k] and e2[k],
+   *         each undirected edge appears once
+   */
+  public static int[][] edges(double[] xs, double[] ys) {
+    Delaunay dt = new Delaunay(xs, ys);
+    dt.triangulate();
+    return new int[][] {
+      Arrays.copyOf(dt.e1, dt.nbEdges),
+      Arrays.copyOf(dt.e2, dt.nbEdges)
+    };
+  }
+
+
+  //===================================
+  // triangulation
+  //===================================
+
+  private void triangulate() {
+
+    e1 = new int[Math.max(16, 3*n)];
+    e2 = new int[Math.max(16, 3*n)];
+    nbEdges = 0;
+    if (n < 2) return;
+
+    // twin[i] = first copy of point i
+    int[] twin = duplicates();
+    int[] ids = new int[n];
+    int m = 0;
+    for (int i=0; i<n; i++) {
+      if (twin[i] == i) ids[m++] = i;
+      else addEdge(i, twin[i]);
+    }
+    if (m == n) {
+      sweep(ids);
+      return;
+    }
+
+    int base = nbEdges;
+    if (m >= 2) sweep(Arrays.copyOf(ids, m));
+
+    // copies share the neighbors of their twin
+    int[] copyHead = new int[n];
+    int[] copyNext = new int[n];
+    Arrays.fill(copyHead, -1);
+    for (int i=n-1; i>=0; i--) {
+      if (twin[i] == i) continue;
+      copyNext[i] = copyHead[twin[i]];
+      copyHead[twin[i]] = i;
+    }
+    int end = nbEdges;
+    for (int k=base; k<end; k++) {
+      int a = e1[k], b = e2[k];
+      for (int c=copyHead[a]; c!=-1; c=copyNext[c]) addEdge(c, b);
+      for (int c=copyHead[b]; c!=-1; c=copyNext[c]) addEdge(c, a);
+    }
+  }
+
+  // map each point to its first exact copy
+  private int[] duplicates() {
+
+    int[] twin = new int[n];
+    int[] idx = new int[n];
+    double[] key = new double[n];
+    for (int i=0; i<n; i++) {
+      twin[i] = i;
+      idx[i] = i;
+      key[i] = xs[i];
+    }
+
+    // sort by x, then runs of equal x by y
+    quicksort(idx, key, 0, n-1);
+    int start = 0;
+    for (int k=1; k<=n; k++) {
+      if (k < n && xs[idx[k]] == xs[idx[start]]) continue;
+      if (k - start > 1) {
+        for (int p=start; p<k; p++) key[idx[p]] = ys[idx[p]];
+        quicksort(idx, key, start, k-1);
+
+        // runs of equal y are copies of their lowest index
+        int first = start;
+        for (int p=start+1; p<=k; p++) {
+          if (p < k && ys[idx[p]] == ys[idx[first]]) continue;
+          int low = idx[first];
+          for (int q=first+1; q<p; q++) low = Math.min(low, idx[q]);
+          for (int q=first; q<p; q++) twin[idx[q]] = low;
+          first = p;
+        }
+      }
+      start = k;
+    }
+    return twin;
+  }
+
+  // triangulate the distinct points ids
+  private void sweep(int[] ids) {
+
+    int m = ids.length;
+
+    // bounding box center
+    double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+    for (int i : ids) {
+      minX = Math.min(minX, xs[i]);
+      minY = Math.min(minY, ys[i]);
+      maxX = Math.max(maxX, xs[i]);
+      maxY = Math.max(maxY, ys[i]);
+    }
+    double bx = (minX + maxX) / 2, by = (minY + maxY) / 2;
+
+    // seed point closest to the center
+    int i0 = -1, i1 = -1, i2 = -1;
+    double minDist = Double.POSITIVE_INFINITY;
+    for (int i : ids) {
+      double d = dist(bx, by, xs[i], ys[i]);
+      if (d < minDist) {
+        i0 = i;
+        minDist = d;
+      }
+    }
+
+    // closest point to the seed
+    minDist = Double.POSITIVE_INFINITY;
+    for (int i : ids) {
+      if (i == i0) continue;
+      double d = dist(xs[i0], ys[i0], xs[i], ys[i]);
+      if (d < minDist && d > 0) {
+        i1 = i;
+        minDist = d;
+      }
+    }
+
+    // third point forming the smallest circumcircle
+    double minRadius = Double.POSITIVE_INFINITY;
+    for (int i : ids) {
+      if (i == i0 || i == i1) continue;
+      if (orient(xs[i0], ys[i0], xs[i1], ys[i1], xs[i], ys[i]) == 0) continue;
+      double r = circumradius(xs[i0], ys[i0], xs[i1], ys[i1], xs[i], ys[i]);
+      if (r < minRadius) {
+        i2 = i;
+        minRadius = r;
+      }
+    }
+
+    // all points collinear: chain them along the line
+    if (i2 == -1) {
+      double[] d = new double[n];
+      for (int i : ids) d[i] = xs[i] != xs[ids[0]] ? xs[i] - xs[ids[0]] : ys[i] - ys[ids[0]];
+      quicksort(ids, d, 0, m-1);
+      for (int k=1; k<m; k++) addEdge(ids[k-1], ids[k]);
+      return;
+    }
+
+    // orient the seed triangle
+    if (orient(xs[i0], ys[i0], xs[i1], ys[i1], xs[i2], ys[i2]) < 0) {
+      int t = i1;
+      i1 = i2;
+      i2 = t;
+    }
+    double[] center = circumcenter(xs[i0], ys[i0], xs[i1], ys[i1], xs[i2], ys[i2]);
+    cx = center[0];
+    cy = center[1];
+
+    // sort the points by distance from the seed circumcenter
+    double[] dists = new double[n];
+    for (int i : ids) dists[i] = dist(xs[i], ys[i], cx, cy);
+    quicksort(ids, dists, 0, m-1);
+
+    int maxTriangles = Math.max(2*m - 5, 1);
+    triangles = new int[3*maxTriangles];
+    halfedges = new int[3*maxTriangles];
+    trianglesLen = 0;
+
+    hashSize = (int) Math.ceil(Math.sqrt(m));
+    hullPrev = new int[n];
+    hullNext = new int[n];
+    hullTri = new int[n];
+    hullHash = new int[hashSize];
+    Arrays.fill(hullHash, -1);
+
+    // initial hull: the seed triangle
+    hullStart = i0;
+    hullNext[i0] = hullPrev[i2] = i1;
+    hullNext[i1] = hullPrev[i0] = i2;
+    hullNext[i2] = hullPrev[i1] = i0;
+    hullTri[i0] = 0;
+    hullTri[i1] = 1;
+    hullTri[i2] = 2;
+    hullHash[hashKey(xs[i0], ys[i0])] = i0;
+    hullHash[hashKey(xs[i1], ys[i1])] = i1;
+    hullHash[hashKey(xs[i2], ys[i2])] = i2;
+
+    addTriangle(i0, i1, i2, -1, -1, -1);
+
+    boolean[] inserted = new boolean[n];
+    inserted[i0] = inserted[i1] = inserted[i2] = true;
+    int nbSkipped = 0;
+
+    for (int k=0; k<m; k++) {
+      int i = ids[k];
+      if (i == i0 || i == i1 || i == i2) continue;
+      double x = xs[i], y = ys[i];
+
+      // find a visible edge on the convex hull using the hash
+      int start = 0;
+      for (int j=0, key=hashKey(x, y); j<hashSize; j++) {
+        start = hullHash[(key + j) % hashSize];
+        if (start != -1 && start != hullNext[start]) break;
+      }
+      start = hullPrev[start];
+
+      int e = start, q;
+      while (orient(x, y, xs[e], ys[e], xs[q = hullNext[e]], ys[q]) >= 0) {
+        e = q;
+        if (e == start) {
+          e = -1;
+          break;
+        }
+      }
+      if (e == -1) {
+        nbSkipped++;
+        continue;
+      }
+      inserted[i] = true;
+
+      // add the first triangle from the point
+      int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+
+      // flip triangles until they satisfy the Delaunay condition
+      hullTri[i] = legalize(t + 2);
+      hullTri[e] = t;
+
+      // walk forward through the hull, adding triangles
+      int nx = hullNext[e];
+      while (orient(x, y, xs[nx], ys[nx], xs[q = hullNext[nx]], ys[q]) < 0) {
+        t = addTriangle(nx, i, q, hullTri[i], -1, hullTri[nx]);
+        hullTri[i] = legalize(t + 2);
+        hullNext[nx] = nx; // removed from the hull
+        nx = q;
+      }
+
+      // walk backward from the other side
+      if (e == start) {
+        while (orient(x, y, xs[q = hullPrev[e]], ys[q], xs[e], ys[e]) < 0) {
+          t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+          legalize(t + 2);
+          hullTri[q] = t;
+          hullNext[e] = e; // removed from the hull
+          e = q;
+        }
+      }
+
+      // update the hull
+      hullStart = hullPrev[i] = e;
+      hullNext[e] = hullPrev[nx] = i;
+      hullNext[i] = nx;
+
+      hullHash[hashKey(x, y)] = i;
+      hullHash[hashKey(xs[e], ys[e])] = e;
+    }
+
+    // collect the edges, each shared half-edge pair once
+    for (int h=0; h<trianglesLen; h++) {
+      if (halfedges[h] > h) continue;
+      addEdge(triangles[h], triangles[h % 3 == 2 ? h - 2 : h + 1]);
+    }
+
+    // points the sweep could not insert (should not happen with
+    // exact predicates) are connected to their nearest neighbor
+    if (nbSkipped > 0) {
+      for (int i : ids) {
+        if (inserted[i]) continue;
+        int best = -1;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int j : ids) {
+          if (!inserted[j]) continue;
+          double d = dist(xs[i], ys[i], xs[j], ys[j]);
+          if (d < bestDist) {
+            best = j;
+            bestDist = d;
+          }
+        }
+        addEdge(i, best);
+      }
+    }
+  }
+
+  private int legalize(int a) {
+
+    int i = 0;
+    int ar;
+
+    while (true) {
+      int b = halfedges[a];
+
+      // the edge shared by triangles (p0,pl,pr) and (pr,pl,p1)
+      // is flipped when p1 is inside the circumcircle of the first
+      int a0 = a - a % 3;
+      ar = a0 + (a + 2) % 3;
+
+      // convex hull edge
+      if (b == -1) {
+        if (i == 0) break;
+        a = edgeStack[--i];
+        continue;
+      }
+
+      int b0 = b - b % 3;
+      int al = a0 + (a + 1) % 3;
+      int bl = b0 + (b + 2) % 3;
+
+      int p0 = triangles[ar];
+      int pr = triangles[a];
+      int pl = triangles[al];
+      int p1 = triangles[bl];
+
+      if (inCircle(xs[p0], ys[p0], xs[pr], ys[pr], xs[pl], ys[pl], xs[p1], ys[p1])) {
+        triangles[a] = p1;
+        triangles[b] = p0;
+
+        int hbl = halfedges[bl];
+
+        // edge swapped on the other side of the hull, fix the reference
+        if (hbl == -1) {
+          int e = hullStart;
+          do {
+            if (hullTri[e] == bl) {
+              hullTri[e] = a;
+              break;
+            }
+            e = hullPrev[e];
+          } while (e != hullStart);
+        }
+        link(a, hbl);
+        link(b, halfedges[ar]);
+        link(ar, bl);
+
+        int br = b0 + (b + 1) % 3;
+        if (i == edgeStack.length) edgeStack = Arrays.copyOf(edgeStack, 2*i);
+        edgeStack[i++] = br;
+      }
+      else {
+        if (i == 0) break;
+        a = edgeStack[--i];
+      }
+    }
+
+    return ar;
+  }
+
+  private void link(int a, int b) {
+    halfedges[a] = b;
+    if (b != -1) halfedges[b] = a;
+  }
+
+  private int addTriangle(int i0, int i1, int i2, int a, int b, int c) {
+    int t = trianglesLen;
+    triangles[t] = i0;
+    triangles[t + 1] = i1;
+    triangles[t + 2] = i2;
+    link(t, a);
+    link(t + 1, b);
+    link(t + 2, c);
+    trianglesLen += 3;
+    return t;
+  }
+
+  private void addEdge(int a, int b) {
+    if (nbEdges == e1.length) {
+      e1 = Arrays.copyOf(e1, 2*nbEdges);
+      e2 = Arrays.copyOf(e2, 2*nbEdges);
+    }
+    e1[nbEdges] = a;
+    e2[nbEdges] = b;
+    nbEdges++;
+  }
+
+  private int hashKey(double x, double y) {
+    return (int) Math.floor(pseudoAngle(x - cx, y - cy) * hashSize) % hashSize;
+  }
+
+
+  //===================================
+  // geometry
+  //===================================
+
+  // monotonic with the real angle, in [0,1]
+  private static double pseudoAngle(double dx, double dy) {
+    double p = dx / (Math.abs(dx) + Math.abs(dy));
+    return (dy > 0 ? 3 - p : 1 + p) / 4;
+  }
+
+  private static double dist(double ax, double ay, double bx, double by) {
+    double dx = ax - bx, dy = ay - by;
+    return dx * dx + dy * dy;
+  }
+
+  private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy) {
+    double dx = bx - ax, dy = by - ay;
+    double ex = cx - ax, ey = cy - ay;
+    double bl = dx * dx + dy * dy;
+    double cl = ex * ex + ey * ey;
+    double d = 0.5 / (dx * ey - dy * ex);
+    double x = (ey * bl - dy * cl) * d;
+    double y = (dx * cl - ex * bl) * d;
+    return x * x + y * y;
+  }
+
+  private static double[] circumcenter(double ax, double ay, double bx, double by, double cx, double cy) {
+    double dx = bx - ax, dy = by - ay;
+    double ex = cx - ax, ey = cy - ay;
+    double bl = dx * dx + dy * dy;
+    double cl = ex * ex + ey * ey;
+    double d = 0.5 / (dx * ey - dy * ex);
+    return new double[] {
+      ax + (ey * bl - dy * cl) * d,
+      ay + (dx * cl - ex * bl) * d
+    };
+  }
+
+  private static final double EPS = Math.ulp(1.0) / 2;
+  private static final double CCW_BOUND = (3 + 16 * EPS) * EPS;
+  private static final double ICC_BOUND = (10 + 96 * EPS) * EPS;
+
+  /**
+   * sign of (ay-cy)*(bx-cx) - (ax-cx)*(by-cy),
+   * negative when a, b, c turn counterclockwise
+   */
+  static int orient(double ax, double ay, double bx, double by, double cx, double cy) {
+
+    double detLeft = (ay - cy) * (bx - cx);
+    double detRight = (ax - cx) * (by - cy);
+    double det = detLeft - detRight;
+    double bound = CCW_BOUND * (Math.abs(detLeft) + Math.abs(detRight));
+    if (det > bound) return 1;
+    if (det < -bound) return -1;
+
+    // exact evaluation
+    BigInteger[] v = exact(ax, ay, bx, by, cx, cy);
+    BigInteger acx = v[0].subtract(v[4]), acy = v[1].subtract(v[5]);
+    BigInteger bcx = v[2].subtract(v[4]), bcy = v[3].subtract(v[5]);
+    return acy.multiply(bcx).subtract(acx.multiply(bcy)).signum();
+  }
+
+  /**
+   * true when p is strictly inside the circumcircle
+   * of the counterclockwise triangle a, b, c
+   */
+  static boolean inCircle(double ax, double ay, double bx, double by,
+                          double cx, double cy, double px, double py) {
+
+    double dx = ax - px, dy = ay - py;
+    double ex = bx - px, ey = by - py;
+    double fx = cx - px, fy = cy - py;
+
+    double ap = dx * dx + dy * dy;
+    double bp = ex * ex + ey * ey;
+    double cp = fx * fx + fy * fy;
+
+    double det = ap * (ex * fy - fx * ey) + bp * (fx * dy - dx * fy) + cp * (dx * ey - ex * dy);
+    double permanent = (Math.abs(ey * fx) + Math.abs(ex * fy)) * ap
+                     + (Math.abs(fy * dx) + Math.abs(fx * dy)) * bp
+                     + (Math.abs(dy * ex) + Math.abs(dx * ey)) * cp;
+    double bound = ICC_BOUND * permanent;
+    if (det < -bound) return true;
+    if (det > bound) return false;
+
+    // exact evaluation
+    BigInteger[] v = exact(ax, ay, bx, by, cx, cy, px, py);
+    BigInteger bdx = v[0].subtract(v[6]), bdy = v[1].subtract(v[7]);
+    BigInteger bex = v[2].subtract(v[6]), bey = v[3].subtract(v[7]);
+    BigInteger bfx = v[4].subtract(v[6]), bfy = v[5].subtract(v[7]);
+    BigInteger bap = bdx.multiply(bdx).add(bdy.multiply(bdy));
+    BigInteger bbp = bex.multiply(bex).add(bey.multiply(bey));
+    BigInteger bcp = bfx.multiply(bfx).add(bfy.multiply(bfy));
+    BigInteger exact = bap.multiply(bex.multiply(bfy).subtract(bfx.multiply(bey)))
+      .add(bbp.multiply(bfx.multiply(bdy).subtract(bdx.multiply(bfy))))
+      .add(bcp.multiply(bdx.multiply(bey).subtract(bex.multiply(bdy))));
+    return exact.signum() < 0;
+  }
+
+  /**
+   * the values scaled by a common power of two so that all
+   * of them are integers (signs of polynomials are unchanged)
+   */
+  private static BigInteger[] exact(double... values) {
+
+    int minExp = Integer.MAX_VALUE;
+    for (double a : values) {
+      if (a != 0) minExp = Math.min(minExp, Math.getExponent(a) - 52);
+    }
+
+    BigInteger[] v = new BigInteger[values.length];
+    for (int k=0; k<values.length; k++) {
+      double a = values[k];
+      if (a == 0) {
+        v[k] = BigInteger.ZERO;
+        continue;
+      }
+      // a = mantissa * 2^exp exactly
+      int exp = Math.getExponent(a) - 52;
+      long mantissa = (Double.doubleToRawLongBits(a) & 0xFFFFFFFFFFFFFL) | (1L << 52);
+      if (exp < Double.MIN_EXPONENT - 52) { // subnormal
+        exp = Double.MIN_EXPONENT - 52;
+        mantissa &= 0xFFFFFFFFFFFFFL;
+      }
+      BigInteger m = BigInteger.valueOf(a < 0 ? -mantissa : mantissa);
+      v[k] = m.shiftLeft(exp - minExp);
+    }
+    return v;
+  }
+
+  // sort ids[left..right] by increasing dists[id]
+  private static void quicksort(int[] ids, double[] dists, int left, int right) {
+
+    if (right - left <= 20) {
+      for (int i=left+1; i<=right; i++) {
+        int temp = ids[i];
+        double tempDist = dists[temp];
+        int j = i - 1;
+        while (j >= left && dists[ids[j]] > tempDist) ids[j + 1] = ids[j--];
+        ids[j + 1] = temp;
+      }
+      return;
+    }
+
+    int median = (left + right) >> 1;
+    int i = left + 1;
+    int j = right;
+    swap(ids, median, i);
+    if (dists[ids[left]] > dists[ids[right]]) swap(ids, left, right);
+    if (dists[ids[i]] > dists[ids[right]]) swap(ids, i, right);
+    if (dists[ids[left]] > dists[ids[i]]) swap(ids, left, i);
+
+    int temp = ids[i];
+    double tempDist = dists[temp];
+    while (true) {
+      do i++; while (dists[ids[i]] < tempDist);
+      do j--; while (dists[ids[j]] > tempDist);
+      if (j < i) break;
+      swap(ids, i, j);
+    }
+    ids[left + 1] = ids[j];
+    ids[j] = temp;
+
+    if (right - i + 1 >= j - left) {
+      quicksort(ids, dists, i, right);
+      quicksort(ids, dists, left, j - 1);
+    }
+    else {
+      quicksort(ids, dists, left, j - 1);
+      quicksort(ids, dists, i, right);
+    }
+  }
+
+  private static void swap(int[] arr, int i, int j) {
+    int tmp = arr[i];
+    arr[i] = arr[j];
+    arr[j] = tmp;
+  }
+}
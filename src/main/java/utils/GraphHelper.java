@@ -4,7 +4,7 @@ import ttp.TTP1Instance;
 import ttp.TTPInstance;
 
 import java.io.*;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  * Created by kyu on 11/3/15.
@@ -14,55 +14,77 @@ public class GraphHelper {
   /**
    * get delaunay candidates
    */
-  public static HashSet<Integer>[] delaunay(TTPInstance ttp) {
+  public static CandidateList delaunay(TTPInstance ttp) {
+    double[][] xy = coordinates(ttp);
+    int[][] edges = Delaunay.edges(xy[0], xy[1]);
+    return CandidateList.fromEdges(ttp, edges[0], edges[1], edges[0].length);
+  }
 
-    int nbCities = ttp.getNbCities();
+
+  /**
+   * get delaunay candidates
+   * using the external dct program
+   */
+  public static CandidateList delaunayExternal(TTPInstance ttp) {
+    double[][] xy = coordinates(ttp);
+    int[][] edges = dctEdges(xy[0], xy[1]);
+    if (edges == null) return null;
+    return CandidateList.fromEdges(ttp, edges[0], edges[1], edges[0].length);
+  }
+
+
+  /**
+   * delaunay edges computed by the external dct program
+   */
+  public static int[][] dctEdges(double[] xs, double[] ys) {
+
+    int nbCities = xs.length;
 
     try {
       // write coordinates
-      String[] tspBase = ttp.getName().split("_",2);
-      String name = tspBase[0];
-      String fileNameCoord = "bins/delaunay/" + name + ".coord";
-      File fileCoord = new File(fileNameCoord);
-      PrintWriter coordWriter = new PrintWriter(fileCoord);
-      coordWriter.println(ttp.getNbCities());
-      for (CityCoordinates node : ttp.getCoordinates()) {
-        coordWriter.println(node.getX() + " " + node.getY());
+      File fileCoord = File.createTempFile("dct", ".coord", new File("bins/delaunay"));
+      PrintWriter coordWriter = new PrintWriter(new BufferedWriter(new FileWriter(fileCoord)));
+      coordWriter.println(nbCities);
+      for (int i = 0; i < nbCities; i++) {
+        coordWriter.println(xs[i] + " " + ys[i]);
       }
       coordWriter.close();
 
       // execute delaunay program
-      String[] cmd = {"./bins/delaunay/dct.sh", fileNameCoord};
+      String[] cmd = {"./bins/delaunay/dct.sh", fileCoord.getPath()};
       Runtime runtime = Runtime.getRuntime();
       Process proc = runtime.exec(cmd);
 
       // read output from Delaunay program
       BufferedReader br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
 
-      // store candidates in a hash table
-      // and instantiate all sub lists
-      HashSet<Integer>[] arcTable = new HashSet[nbCities];
-      for (int i = 0; i < nbCities; i++) {
-        arcTable[i] = new HashSet<>();
-      }
+      // collect edges, a planar graph has at most 3n edges
+      int[] e1 = new int[3*nbCities];
+      int[] e2 = new int[3*nbCities];
+      int nbEdges = 0;
 
-      int node1, node2;
       String line;
       while ((line = br.readLine()) != null) {
-        String[] parts = line.split("\\s+");
+        String[] parts = line.trim().split("\\s+");
+        if (parts.length < 2) continue;
 
-        node1 = Integer.parseInt(parts[0]);
-        node2 = Integer.parseInt(parts[1]);
-
-        arcTable[node1].add(node2);
-        arcTable[node2].add(node1);
+        if (nbEdges == e1.length) {
+          e1 = Arrays.copyOf(e1, 2*nbEdges);
+          e2 = Arrays.copyOf(e2, 2*nbEdges);
+        }
+        e1[nbEdges] = Integer.parseInt(parts[0]);
+        e2[nbEdges] = Integer.parseInt(parts[1]);
+        nbEdges++;
       }
       br.close();
 
       // delete coordinates file
       fileCoord.delete();
 
-      return arcTable;
+      return new int[][] {
+        Arrays.copyOf(e1, nbEdges),
+        Arrays.copyOf(e2, nbEdges)
+      };
 
     } catch (IOException e) {
       e.printStackTrace();
@@ -72,34 +94,25 @@ public class GraphHelper {
   }
 
 
-  /**
-   * delaunay triangulation
-   * k'th level
-   */
-  public static HashSet<Integer>[] delaunayKNN(TTPInstance ttp, int k) {
-
+  // city coordinates as {xs, ys}
+  private static double[][] coordinates(TTPInstance ttp) {
     int nbCities = ttp.getNbCities();
-    HashSet<Integer>[] tri = delaunay(ttp);
-    HashSet<Integer>[] tri2 = new HashSet[nbCities];
-
-    // fill tri2 with tri ==> level 1
+    CityCoordinates[] coords = ttp.getCoordinates();
+    double[][] xy = new double[2][nbCities];
     for (int i = 0; i < nbCities; i++) {
-      tri2[i] = new HashSet(tri[i]);
+      xy[0][i] = coords[i].getX();
+      xy[1][i] = coords[i].getY();
     }
+    return xy;
+  }
 
-    for (int i = 0; i < nbCities; i++) {
-      //Deb.echo(i+"-"+tri[i]);
-      for (int j=1; j <= k-1; j++) {
-        HashSet<Integer> currentSet = new HashSet(tri2[i]);
-        for (int x : currentSet) {
-          //Deb.echo(">"+x+":"+tri[x]);
-          tri2[i].addAll(tri[x]);
-        }
-        //Deb.echo(i + "-" + tri2[i]);
-      }
-    }
 
-    return tri2;
+  /**
+   * delaunay triangulation
+   * k'th level
+   */
+  public static CandidateList delaunayKNN(TTPInstance ttp, int k) {
+    return delaunay(ttp).expand(ttp, k);
   }
 
 
@@ -112,14 +125,8 @@ public class GraphHelper {
     final TTP1Instance ttp = new TTP1Instance("d15112-ttp/d15112_n15111_bounded-strongly-corr_01.ttp");
     Deb.echo(ttp);
 
-    HashSet<Integer>[] delaunay = GraphHelper.delaunayKNN(ttp, 10);
-
-    int sum = 0;
-    for (HashSet<Integer> x : delaunay) {
-      sum += x.size();
-      //Deb.echo(x);
-    }
+    CandidateList delaunay = GraphHelper.delaunayKNN(ttp, 10);
 
-    Deb.echo(sum/ttp.getNbCities());
+    Deb.echo(delaunay.nodes.length/ttp.getNbCities());
   }
 }
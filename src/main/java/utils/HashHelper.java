@@ -0,0 +1,68 @@
+package utils;
+
+import ttp.TTPSolution;
+
+/**
+ * 64-bit fingerprints of TTP solutions
+ *
+ * Zobrist-style: every directed tour edge and every picked item
+ * has a pseudo-random key (SplitMix64 of its index, no table),
+ * the fingerprint is the XOR of the keys of the solution. a move
+ * updates it by XOR-ing the keys of the removed and added parts:
+ *
+ *   h ^= edge(a,b) ^ edge(a,c)   // leg a->b replaced by a->c
+ *   h ^= item(k)                 // item k flipped
+ *
+ * tours start from city 1, so two tours have the same directed
+ * edges iff they are the same array
+ */
+public class HashHelper {
+
+  // keeps item keys apart from edge keys
+  private static final long ITEM_SALT = 0x6a09e667f3bcc909L;
+
+  /**
+   * SplitMix64 finalizer
+   */
+  public static long mix(long z) {
+    z += 0x9e3779b97f4a7c15L;
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  // key of the directed leg a -> b
+  public static long edge(int a, int b) {
+    return mix(((long) a << 32) | (b & 0xffffffffL));
+  }
+
+  // key of picked item k
+  public static long item(int k) {
+    return mix(k ^ ITEM_SALT);
+  }
+
+
+  // fingerprint of a tour, closing leg included
+  public static long tour(int[] tour) {
+    int n = tour.length;
+    long h = edge(tour[n-1], tour[0]);
+    for (int i = 0; i < n-1; i++) {
+      h ^= edge(tour[i], tour[i+1]);
+    }
+    return h;
+  }
+
+  // fingerprint of a picking plan
+  public static long pickingPlan(int[] pickingPlan) {
+    long h = 0;
+    for (int k = 0; k < pickingPlan.length; k++) {
+      if (pickingPlan[k] != 0) h ^= item(k);
+    }
+    return h;
+  }
+
+  // fingerprint of a solution
+  public static long of(TTPSolution sol) {
+    return tour(sol.getTour()) ^ pickingPlan(sol.getPickingPlan());
+  }
+}
@@ -0,0 +1,267 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * indices of a double[] in descending key order
+ *
+ * keys are mapped to 64-bit integers with the same order (IEEE
+ * bits, sign folded) and sorted by an LSD radix sort, 11 bits per
+ * pass, passes where all keys share the digit are skipped. large
+ * arrays count and scatter in parallel chunks. the sort is stable:
+ * equal keys keep increasing indices, -0.0 equals 0.0, NaN comes
+ * first. topK selects the k first indices of the same order
+ */
+public class IndexSort {
+
+  private static final int BITS = 11;
+  private static final int RADIX = 1 << BITS;
+  private static final int MASK = RADIX - 1;
+
+  // smaller arrays use an insertion sort
+  private static final int INSERTION_THRESHOLD = 64;
+  // larger arrays are sorted by parallel chunks
+  private static final int PARALLEL_THRESHOLD = 1 << 17;
+
+
+  /**
+   * indices of keys, largest key first
+   */
+  public static int[] sortDescending(double[] keys) {
+    int n = keys.length;
+    long[] k = new long[n];
+    int[] idx = new int[n];
+    for (int i = 0; i < n; i++) {
+      k[i] = descendingBits(keys[i]);
+      idx[i] = i;
+    }
+    sort(k, idx, n);
+    return idx;
+  }
+
+
+  /**
+   * indices of the k largest keys, largest first,
+   * same as the k first entries of sortDescending
+   */
+  public static int[] topK(double[] keys, int k) {
+    int n = keys.length;
+    if (k >= n / 2) return Arrays.copyOf(sortDescending(keys), Math.min(k, n));
+    if (k <= 0) return new int[0];
+
+    long[] bits = new long[n];
+    for (int i = 0; i < n; i++) {
+      bits[i] = descendingBits(keys[i]);
+    }
+
+    // k-th key in sorted order
+    long kth = select(bits.clone(), k - 1);
+
+    // keys before the k-th one, then ties in index order
+    long[] sk = new long[k];
+    int[] si = new int[k];
+    int m = 0;
+    for (int i = 0; i < n; i++) {
+      if (Long.compareUnsigned(bits[i], kth) < 0) {
+        sk[m] = bits[i];
+        si[m++] = i;
+      }
+    }
+    for (int i = 0; i < n && m < k; i++) {
+      if (bits[i] == kth) {
+        sk[m] = kth;
+        si[m++] = i;
+      }
+    }
+    sort(sk, si, k);
+    return si;
+  }
+
+
+  /**
+   * unsigned 64-bit integer, increasing as the key decreases
+   */
+  private static long descendingBits(double x) {
+    long b = Double.doubleToLongBits(x + 0.0);  // -0.0 as 0.0
+    // increasing with x as an unsigned integer
+    b ^= b < 0 ? -1L : Long.MIN_VALUE;
+    return ~b;
+  }
+
+
+  /**
+   * stable sort of idx[0..n-1] by increasing unsigned key
+   */
+  private static void sort(long[] k, int[] idx, int n) {
+
+    if (n < INSERTION_THRESHOLD) {
+      insertionSort(k, idx, n);
+      return;
+    }
+
+    long[] kIn = k;
+    int[] idxIn = idx;
+    long[] k2 = new long[n];
+    int[] idx2 = new int[n];
+    boolean parallel = n >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1;
+
+    for (int shift = 0; shift < 64; shift += BITS) {
+      boolean moved = parallel ?
+        parallelPass(k, idx, k2, idx2, n, shift) :
+        pass(k, idx, k2, idx2, n, shift);
+      if (!moved) continue;
+
+      long[] tk = k; k = k2; k2 = tk;
+      int[] ti = idx; idx = idx2; idx2 = ti;
+    }
+
+    // result in the caller's arrays
+    if (idx != idxIn) {
+      System.arraycopy(k, 0, kIn, 0, n);
+      System.arraycopy(idx, 0, idxIn, 0, n);
+    }
+  }
+
+
+  /**
+   * one counting pass on a digit
+   *
+   * @return false if all keys share the digit (nothing moved)
+   */
+  private static boolean pass(long[] k, int[] idx, long[] k2, int[] idx2, int n, int shift) {
+
+    int[] count = new int[RADIX + 1];
+    for (int i = 0; i < n; i++) {
+      count[(int) (k[i] >>> shift) & MASK]++;
+    }
+    if (count[(int) (k[0] >>> shift) & MASK] == n) return false;
+
+    // bucket starts
+    int sum = 0;
+    for (int d = 0; d < RADIX; d++) {
+      int c = count[d];
+      count[d] = sum;
+      sum += c;
+    }
+
+    for (int i = 0; i < n; i++) {
+      int p = count[(int) (k[i] >>> shift) & MASK]++;
+      k2[p] = k[i];
+      idx2[p] = idx[i];
+    }
+    return true;
+  }
+
+
+  /**
+   * counting pass by chunks: per-chunk counts, bucket starts
+   * ordered by (digit, chunk) keep the sort stable
+   */
+  private static boolean parallelPass(long[] k, int[] idx, long[] k2, int[] idx2, int n, int shift) {
+
+    int nbChunks = Math.min(Runtime.getRuntime().availableProcessors() * 2, n / (1 << 14));
+    int chunk = (n + nbChunks - 1) / nbChunks;
+    int[][] count = new int[nbChunks][RADIX];
+
+    IntStream.range(0, nbChunks).parallel().forEach(c -> {
+      int[] cc = count[c];
+      int end = Math.min(n, (c + 1) * chunk);
+      for (int i = c * chunk; i < end; i++) {
+        cc[(int) (k[i] >>> shift) & MASK]++;
+      }
+    });
+
+    int d0 = (int) (k[0] >>> shift) & MASK;
+    int same = 0;
+    for (int c = 0; c < nbChunks; c++) same += count[c][d0];
+    if (same == n) return false;
+
+    // bucket starts of each chunk
+    int sum = 0;
+    for (int d = 0; d < RADIX; d++) {
+      for (int c = 0; c < nbChunks; c++) {
+        int x = count[c][d];
+        count[c][d] = sum;
+        sum += x;
+      }
+    }
+
+    IntStream.range(0, nbChunks).parallel().forEach(c -> {
+      int[] cc = count[c];
+      int end = Math.min(n, (c + 1) * chunk);
+      for (int i = c * chunk; i < end; i++) {
+        int p = cc[(int) (k[i] >>> shift) & MASK]++;
+        k2[p] = k[i];
+        idx2[p] = idx[i];
+      }
+    });
+    return true;
+  }
+
+
+  private static void insertionSort(long[] k, int[] idx, int n) {
+    for (int i = 1; i < n; i++) {
+      long key = k[i];
+      int id = idx[i];
+      int j = i - 1;
+      while (j >= 0 && Long.compareUnsigned(k[j], key) > 0) {
+        k[j + 1] = k[j];
+        idx[j + 1] = idx[j];
+        j--;
+      }
+      k[j + 1] = key;
+      idx[j + 1] = id;
+    }
+  }
+
+
+  /**
+   * r-th smallest unsigned key (0-based), a is reordered
+   *
+   * quickselect with median-of-3 pivots and 3-way partitions,
+   * falls back to a full sort after too many rounds
+   */
+  private static long select(long[] a, int r) {
+
+    int lo = 0, hi = a.length - 1;
+    int rounds = 2 * (32 - Integer.numberOfLeadingZeros(a.length)) + 8;
+
+    while (lo < hi) {
+      if (rounds-- == 0) {
+        // flip the sign bits: signed order is the unsigned one
+        for (int i = lo; i <= hi; i++) a[i] ^= Long.MIN_VALUE;
+        Arrays.sort(a, lo, hi + 1);
+        return a[r] ^ Long.MIN_VALUE;
+      }
+
+      long pivot = median(a[lo], a[lo + (hi - lo) / 2], a[hi]);
+
+      // a[lo..lt-1] < pivot, a[lt..gt] == pivot, a[gt+1..hi] > pivot
+      int lt = lo, gt = hi, i = lo;
+      while (i <= gt) {
+        int c = Long.compareUnsigned(a[i], pivot);
+        if (c < 0) swap(a, lt++, i++);
+        else if (c > 0) swap(a, i, gt--);
+        else i++;
+      }
+
+      if (r < lt) hi = lt - 1;
+      else if (r > gt) lo = gt + 1;
+      else return pivot;
+    }
+    return a[r];
+  }
+
+  private static long median(long a, long b, long c) {
+    if (Long.compareUnsigned(a, b) > 0) { long t = a; a = b; b = t; }
+    if (Long.compareUnsigned(b, c) > 0) { b = c; }
+    return Long.compareUnsigned(a, b) > 0 ? a : b;
+  }
+
+  private static void swap(long[] a, int i, int j) {
+    long t = a[i];
+    a[i] = a[j];
+    a[j] = t;
+  }
+}
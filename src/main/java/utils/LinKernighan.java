@@ -0,0 +1,580 @@
+package utils;
+
+import ttp.TTPInstance;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * in-process Lin-Kernighan style tour engine
+ *
+ * replaces the linkern binary: no process and no temp file.
+ * a greedy start (or a given tour) is improved with 2-opt and
+ * or-opt moves (segments of up to 3 cities, the Or-3opt
+ * neighborhood) on the candidate lists, driven by a queue of
+ * active cities (don't-look bits). then chained local search:
+ * each kick is a local double bridge (two short adjacent
+ * segments swapped), the tour is re-optimized around it and
+ * the kick is rolled back if the tour got longer
+ *
+ * the tour is a TwoLevelTour: a plain array on small instances,
+ * a 2-level doubly-linked list on large ones where a 2-opt move
+ * costs about sqrt(n) instead of up to n/2 array swaps. every
+ * change goes through move2, which is journaled during a kick
+ *
+ * not thread-safe, use one engine per thread
+ */
+public class LinKernighan {
+
+  // number of kicks
+  public int nbKicks = 0;
+  // runtime limit of the kicks in seconds (0: none)
+  public double timeLimit = 0;
+  // longest segment of a kick
+  public int kickLength = 50;
+  // random perturbation of the greedy edge lengths
+  public double startNoise = .1;
+  // LK moves: number of 2-opt steps, alternatives of the first step
+  public int maxDepth = 10;
+  public int breadth = 5;
+
+  private final TTPInstance ttp;
+  private final CandidateList candidates;
+  private final int n;
+
+  private final TwoLevelTour tour;
+  private long length;
+
+  // queue of active cities
+  private final int[] queue;
+  private final boolean[] active;
+  private int head, size;
+
+  // move2 calls since the last kick (or the
+  // current LK move): a,b,c,d
+  private int[] journal = new int[64];
+  private int journalSize;
+  private boolean kicking;
+
+  // edges added by the current LK move
+  private final int[] added = new int[64];
+
+  private SplittableRandom rand;
+
+
+  public LinKernighan(TTPInstance ttp) {
+    this(ttp, GraphHelper.delaunay(ttp));
+  }
+
+  public LinKernighan(TTPInstance ttp, CandidateList candidates) {
+    this.ttp = ttp;
+    this.candidates = candidates;
+    this.n = ttp.getNbCities();
+    this.tour = new TwoLevelTour(n);
+    this.queue = new int[n];
+    this.active = new boolean[n];
+  }
+
+
+  /**
+   * use the linkern binary instead of this engine
+   * (config property lkengine=bins)
+   */
+  public static boolean useBinary() {
+    return "bins".equals(ConfigHelper.getProperty("lkengine"));
+  }
+
+
+  /**
+   * greedy start, local search and nbKicks kicks
+   *
+   * @return tour of 1-based cities starting with city 1
+   */
+  public int[] run(long seed) {
+    rand = new SplittableRandom(seed);
+    load(greedy(startNoise));
+    return search();
+  }
+
+  /**
+   * local search and nbKicks kicks from a given tour
+   *
+   * @param t tour of 1-based cities
+   * @return tour of 1-based cities starting with city 1
+   */
+  public int[] improve(int[] t, long seed) {
+    rand = new SplittableRandom(seed);
+    int[] x = new int[n];
+    for (int i = 0; i < n; i++) x[i] = t[i] - 1;
+    load(x);
+    return search();
+  }
+
+  /**
+   * greedy matching tour, no local search
+   *
+   * @return tour of 1-based cities starting with city 1
+   */
+  public int[] greedyTour() {
+    load(greedy(0));
+    return result();
+  }
+
+  /**
+   * length of the last tour
+   */
+  public long getLength() {
+    return length;
+  }
+
+
+  private int[] search() {
+
+    if (n < 8) return result();
+
+    // local optimum
+    for (int i = 0, c = tour.first(); i < n; i++, c = next(c)) activate(c);
+    optimize();
+
+    // chained local search
+    long deadline = timeLimit > 0 ? System.nanoTime() + (long) (timeLimit * 1e9) : Long.MAX_VALUE;
+    for (int k = 0; k < nbKicks; k++) {
+      if (Thread.currentThread().isInterrupted() || System.nanoTime() > deadline) break;
+
+      long before = length;
+      journalSize = 0;
+      kicking = true;
+      kick();
+      optimize();
+      kicking = false;
+
+      if (length > before) {
+        rollback(0);
+        length = before;
+      }
+      journalSize = 0;
+    }
+
+    return result();
+  }
+
+
+  //===================================
+  // tour
+  //===================================
+
+  private int next(int c) {
+    return tour.next(c);
+  }
+
+  private int prev(int c) {
+    return tour.prev(c);
+  }
+
+  private long dist(int a, int b) {
+    return ttp.distFor(a, b);
+  }
+
+  // 0-based tour
+  private void load(int[] x) {
+    tour.load(x);
+    length = 0;
+    for (int i = 0; i < n; i++) {
+      length += dist(x[i], x[i + 1 == n ? 0 : i + 1]);
+    }
+  }
+
+  // 1-based, rotated to start with city 1
+  private int[] result() {
+    int[] t = new int[n];
+    for (int i = 0, c = 0; i < n; i++, c = next(c)) {
+      t[i] = c + 1;
+    }
+    return t;
+  }
+
+
+  /**
+   * replace edges (a,b) and (c,d) with (a,c) and (b,d),
+   * b and d follow (or both precede) a and c
+   */
+  private void move2(int a, int b, int c, int d) {
+
+    if (next(a) == b) tour.reverse(b, c);
+    else tour.reverse(c, b);
+
+    if (journalSize + 4 > journal.length) journal = Arrays.copyOf(journal, 2 * journal.length);
+    journal[journalSize++] = a;
+    journal[journalSize++] = b;
+    journal[journalSize++] = c;
+    journal[journalSize++] = d;
+  }
+
+  // undo the journaled moves down to mark, last first
+  private void rollback(int mark) {
+    while (journalSize > mark) {
+      int d = journal[--journalSize];
+      int c = journal[--journalSize];
+      int b = journal[--journalSize];
+      int a = journal[--journalSize];
+      move2(a, c, b, d);
+      journalSize -= 4;
+    }
+  }
+
+
+  //===================================
+  // local search
+  //===================================
+
+  private void activate(int c) {
+    if (active[c]) return;
+    active[c] = true;
+    int t = head + size++;
+    queue[t >= n ? t - n : t] = c;
+  }
+
+  private void optimize() {
+    for (int nbPops = 1; size > 0; nbPops++) {
+      if ((nbPops & 1023) == 0 && Thread.currentThread().isInterrupted()) return;
+      int a = queue[head];
+      if (++head == n) head = 0;
+      size--;
+      active[a] = false;
+
+      if (improve2opt(a) || improveOrOpt(a) || improveLK(a)) activate(a);
+
+      // outside a kick, applied moves are final
+      if (!kicking) journalSize = 0;
+    }
+  }
+
+  // first improving 2-opt move with a new edge (a,c)
+  private boolean improve2opt(int a) {
+
+    for (int dir = 0; dir < 2; dir++) {
+      int b = dir == 0 ? next(a) : prev(a);
+      long dab = dist(a, b);
+
+      for (int p = candidates.start(a); p < candidates.end(a); p++) {
+        int c = candidates.nodes[p];
+        long g1 = dab - dist(a, c);
+        if (g1 <= 0) break; // sorted candidates
+
+        int d = dir == 0 ? next(c) : prev(c);
+        if (c == b || d == a) continue;
+
+        long gain = g1 + dist(c, d) - dist(b, d);
+        if (gain > 0) {
+          move2(a, b, c, d);
+          length -= gain;
+          activate(b);
+          activate(c);
+          activate(d);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // first improving relocation of a segment s1..s2 of 1 to 3 cities
+  // with a at one end, the other end is placed next to a candidate
+  private boolean improveOrOpt(int a) {
+
+    for (int len = 1; len <= 3; len++) {
+      for (int side = 0; side < (len == 1 ? 1 : 2); side++) {
+
+        // segment s1..s2 in tour order
+        int s1 = a, s2 = a;
+        for (int k = 1; k < len; k++) {
+          if (side == 0) s2 = next(s2);
+          else s1 = prev(s1);
+        }
+        int mid = len == 3 ? next(s1) : s1;
+        int p = prev(s1), nx = next(s2);
+
+        // removal gain
+        long g1 = dist(p, s1) + dist(s2, nx) - dist(p, nx);
+        if (g1 <= 0) continue;
+
+        for (int e = 0; e < (len == 1 ? 1 : 2); e++) {
+          int end = e == 0 ? s1 : s2;
+
+          for (int q = candidates.start(end); q < candidates.end(end); q++) {
+            int c = candidates.nodes[q];
+            long g2 = g1 - dist(end, c);
+            if (g2 <= 0) break; // sorted candidates
+            if (c == s1 || c == mid || c == s2) continue;
+
+            // insert between x and y, end next to c
+            for (int w = 0; w < 2; w++) {
+              int x = w == 0 ? c : prev(c);
+              int y = w == 0 ? next(c) : c;
+              if (x == s2 || y == s1 || y == p) continue;
+
+              boolean rev = len > 1 && (w == 0) == (end == s2);
+              long add = (rev ? dist(x, s2) + dist(s1, y) : dist(x, s1) + dist(s2, y)) - dist(x, y);
+              long gain = g1 - add;
+              if (gain > 0) {
+                // p x..nx s2..s1 y, then reversed back if needed
+                move2(p, s1, x, y);
+                if (x != nx) move2(p, x, nx, s2);
+                if (!rev && s1 != s2) move2(x, s2, s1, y);
+                length -= gain;
+                activate(p);
+                activate(nx);
+                activate(s1);
+                activate(s2);
+                activate(x);
+                activate(y);
+                return true;
+              }
+            }
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * LK move from t1: a chain of 2-opt moves, each one breaks
+   * the closing edge (t1,t2) of the previous one, adds (t2,t3)
+   * and breaks (t3,t4). the alternatives for the first t3 are
+   * tried in turn, the next steps take the best lookahead
+   * d(t3,t4)-d(t2,t3). the chain is cut back to its best tour
+   * (rolled back if it never improves). added edges are not
+   * broken again
+   */
+  private boolean improveLK(int t1) {
+
+    for (int dir = 0; dir < 2; dir++) {
+      int first = dir == 0 ? next(t1) : prev(t1);
+
+      int nbAlt = 0;
+      for (int p0 = candidates.start(first); p0 < candidates.end(first) && nbAlt < breadth; p0++) {
+
+        int mark = journalSize;
+        int t2 = first;
+        long G = 0, best = 0;
+        int bestMark = mark;
+        int nbAdded = 0;
+
+        for (int depth = 0; depth < maxDepth; depth++) {
+
+          // t1 - t2 is the edge to break: an original edge at
+          // first, then the closing edge, which G does not count
+          boolean fwd = next(t1) == t2;
+          long g1 = depth == 0 ? dist(t1, t2) : G;
+
+          int t3 = -1, t4 = -1;
+          long bestLook = Long.MIN_VALUE;
+          for (int p = depth == 0 ? p0 : candidates.start(t2); p < candidates.end(t2); p++) {
+            int c = candidates.nodes[p];
+            long g = g1 - dist(t2, c);
+            if (g <= 0) break; // sorted candidates
+            int d = fwd ? prev(c) : next(c);
+            if (c == t1 || d == t2 || d == t1 || isAdded(nbAdded, c, d)) {
+              if (depth == 0) p0 = p;
+              continue;
+            }
+
+            long look = dist(c, d) - dist(t2, c);
+            if (look > bestLook) {
+              bestLook = look;
+              t3 = c;
+              t4 = d;
+            }
+            // first step: one alternative at a time
+            if (depth == 0) {
+              p0 = p;
+              break;
+            }
+          }
+          if (t3 < 0) {
+            if (depth == 0) p0 = candidates.end(t2);
+            break;
+          }
+          if (depth == 0) nbAlt++;
+
+          // break (t1,t2) and (t3,t4), add (t2,t3) and (t4,t1)
+          move2(t2, t1, t3, t4);
+          if (nbAdded < added.length) {
+            added[nbAdded++] = t2;
+            added[nbAdded++] = t3;
+          }
+          G = g1 - dist(t2, t3) + dist(t3, t4);
+          long gain = G - dist(t4, t1);
+          if (gain > best) {
+            best = gain;
+            bestMark = journalSize;
+          }
+          t2 = t4;
+        }
+
+        // keep the best tour of the chain
+        rollback(bestMark);
+        if (best > 0) {
+          length -= best;
+          for (int k = mark; k < journalSize; k++) activate(journal[k]);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  // (a,b) added by the current LK move
+  private boolean isAdded(int nbAdded, int a, int b) {
+    for (int k = 0; k < nbAdded; k += 2) {
+      if ((added[k] == a && added[k + 1] == b) || (added[k] == b && added[k + 1] == a)) return true;
+    }
+    return false;
+  }
+
+
+  //===================================
+  // kicks
+  //===================================
+
+  // a b1..b2 c1..c2 d -> a c1..c2 b1..b2 d
+  private void kick() {
+
+    int l1 = 1 + rand.nextInt(Math.min(kickLength, n / 4));
+    int l2 = 1 + rand.nextInt(Math.min(kickLength, n / 4));
+
+    int a = rand.nextInt(n);
+    int b1 = next(a), b2 = b1;
+    for (int k = 1; k < l1; k++) b2 = next(b2);
+    int c1 = next(b2), c2 = c1;
+    for (int k = 1; k < l2; k++) c2 = next(c2);
+    int d = next(c2);
+
+    length += dist(a, c1) + dist(c2, b1) + dist(b2, d)
+      - dist(a, b1) - dist(b2, c1) - dist(c2, d);
+
+    move2(a, b1, c2, d);
+    if (c1 != c2) move2(a, c2, c1, b2);
+    if (b1 != b2) move2(c2, b2, b1, d);
+
+    activate(a);
+    activate(b1);
+    activate(b2);
+    activate(c1);
+    activate(c2);
+    activate(d);
+  }
+
+
+  //===================================
+  // greedy start
+  //===================================
+
+  // greedy matching on the candidate edges, fragments
+  // joined by nearest free end, 0-based tour
+  private int[] greedy(double noise) {
+
+    // candidate edges sorted by (perturbed) length
+    int nbEdges = 0;
+    long[] keys = new long[candidates.nodes.length];
+    for (int i = 0; i < n; i++) {
+      for (int p = candidates.start(i); p < candidates.end(i); p++) {
+        double f = noise > 0 ? 1 + noise * rand.nextDouble() : 1;
+        long d = Math.min((long) (dist(i, candidates.nodes[p]) * f), Integer.MAX_VALUE);
+        keys[nbEdges++] = (d << 32) | p;
+      }
+    }
+    Arrays.sort(keys, 0, nbEdges);
+
+    // edge owners
+    int[] from = new int[candidates.nodes.length];
+    for (int i = 0; i < n; i++) {
+      for (int p = candidates.start(i); p < candidates.end(i); p++) from[p] = i;
+    }
+
+    // matching: degree <= 2, no cycle
+    int[] adj = new int[2 * n];
+    Arrays.fill(adj, -1);
+    int[] root = new int[n];
+    for (int i = 0; i < n; i++) root[i] = i;
+    for (int k = 0; k < nbEdges; k++) {
+      int p = (int) keys[k];
+      int u = from[p], v = candidates.nodes[p];
+      if (adj[2 * u + 1] >= 0 || adj[2 * v + 1] >= 0) continue;
+      int ru = find(root, u), rv = find(root, v);
+      if (ru == rv) continue;
+      root[ru] = rv;
+      adj[adj[2 * u] < 0 ? 2 * u : 2 * u + 1] = v;
+      adj[adj[2 * v] < 0 ? 2 * v : 2 * v + 1] = u;
+    }
+
+    // free ends
+    int[] ends = new int[n];
+    int[] endIndex = new int[n];
+    Arrays.fill(endIndex, -1);
+    int nbEnds = 0;
+    for (int i = 0; i < n; i++) {
+      if (adj[2 * i + 1] < 0) {
+        endIndex[i] = nbEnds;
+        ends[nbEnds++] = i;
+      }
+    }
+
+    // walk the fragments
+    int[] x = new int[n];
+    int len = 0;
+    int u = nbEnds > 0 ? ends[0] : 0;
+    while (true) {
+
+      // remove u from the free ends
+      if (endIndex[u] >= 0) nbEnds = removeEnd(ends, endIndex, nbEnds, u);
+
+      // walk the fragment from u
+      int prev = -1, cur = u;
+      while (true) {
+        x[len++] = cur;
+        int nxt = adj[2 * cur] != prev ? adj[2 * cur] : adj[2 * cur + 1];
+        if (nxt < 0 || nxt == prev || len == n) break;
+        prev = cur;
+        cur = nxt;
+      }
+      if (len == n) break;
+      if (endIndex[cur] >= 0) nbEnds = removeEnd(ends, endIndex, nbEnds, cur);
+
+      // nearest free end: candidates first, then all
+      u = -1;
+      for (int p = candidates.start(cur); p < candidates.end(cur) && u < 0; p++) {
+        if (endIndex[candidates.nodes[p]] >= 0) u = candidates.nodes[p];
+      }
+      if (u < 0) {
+        long best = Long.MAX_VALUE;
+        for (int k = 0; k < nbEnds; k++) {
+          long d = dist(cur, ends[k]);
+          if (d < best) {
+            best = d;
+            u = ends[k];
+          }
+        }
+      }
+    }
+    return x;
+  }
+
+  private static int find(int[] root, int i) {
+    while (root[i] != i) {
+      root[i] = root[root[i]];
+      i = root[i];
+    }
+    return i;
+  }
+
+  private static int removeEnd(int[] ends, int[] endIndex, int nbEnds, int c) {
+    int k = endIndex[c];
+    int last = ends[--nbEnds];
+    ends[k] = last;
+    endIndex[last] = k;
+    endIndex[c] = -1;
+    return nbEnds;
+  }
+}
@@ -1,17 +1,57 @@
 package utils;
 
-import java.util.Random;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
 
+/**
+ * random numbers
+ *
+ * every thread draws from its own SplittableRandom: no allocation
+ * per call and no contention between parallel solvers. thread
+ * generators are split from a root generator, seeding the root
+ * (setSeed) makes a run reproducible, a thread can also be given
+ * its own seed (setThreadSeed), e.g. one per multi-start
+ */
 public class RandGen {
 
+  // per-thread generators are split from it
+  private static SplittableRandom root = new SplittableRandom();
+
+  private static final ThreadLocal<SplittableRandom> local =
+    ThreadLocal.withInitial(RandGen::split);
+
+  private static synchronized SplittableRandom split() {
+    return root.split();
+  }
+
+
+  /**
+   * seed the run: reset the root generator
+   * and the calling thread's generator
+   */
+  public static synchronized void setSeed(long seed) {
+    root = new SplittableRandom(seed);
+    local.set(root.split());
+  }
+
+  /**
+   * seed the calling thread's generator only
+   */
+  public static void setThreadSeed(long seed) {
+    local.set(new SplittableRandom(seed));
+  }
+
+  // calling thread's generator
+  public static SplittableRandom get() {
+    return local.get();
+  }
+
+
   public static char randChar(){
-    char min = 'A';
-    char max = 'Z'+1;
-    Random random = new Random();
-    int r=random.nextInt(max - min) + min;
-    return (char)r;
+    return (char) randInt('A', 'Z');
   }
-  
+
   public static String randStr(int n) {
     String s = "";
     for (int i=0; i<n; i++) {
@@ -20,11 +60,26 @@ public class RandGen {
     return s;
   }
 
+  // uniform in [min, max]
   public static int randInt(int min, int max) {
+    return local.get().nextInt(min, max + 1);
+  }
 
-    Random rand = new Random();
-    int randomNum = rand.nextInt((max - min) + 1) + min;
+  // uniform in [0, n)
+  public static int nextInt(int n) {
+    return local.get().nextInt(n);
+  }
+
+  // uniform in [0, 1)
+  public static double random() {
+    return local.get().nextDouble();
+  }
 
-    return randomNum;
+  // Fisher-Yates shuffle
+  public static void shuffle(List<?> li) {
+    SplittableRandom rand = local.get();
+    for (int i = li.size() - 1; i > 0; i--) {
+      Collections.swap(li, i, rand.nextInt(i + 1));
+    }
   }
 }
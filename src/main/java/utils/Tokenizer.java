@@ -0,0 +1,248 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * byte-level tokenizer for instance, tour and solution files
+ *
+ * reads ASCII text from a ByteBuffer (memory-mapped or in heap)
+ * and parses numbers directly from the bytes, so the data
+ * sections of a file are read without creating any String.
+ * header values (`KEY : value`) are the only allocations
+ */
+public class Tokenizer {
+
+  private final ByteBuffer buf;
+  private final int limit;
+  private int pos;
+
+
+  public Tokenizer(ByteBuffer buf) {
+    this.buf = buf;
+    this.pos = buf.position();
+    this.limit = buf.limit();
+  }
+
+
+  /**
+   * tokenizer over a memory-mapped file
+   */
+  public static Tokenizer map(File file) throws IOException {
+    try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      return new Tokenizer(ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    }
+  }
+
+  /**
+   * tokenizer over a copy of a file,
+   * use it for files deleted after reading
+   */
+  public static Tokenizer read(File file) throws IOException {
+    return new Tokenizer(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+  }
+
+
+  //===================================
+  // lines
+  //===================================
+
+  public boolean hasMore() {
+    return pos < limit;
+  }
+
+  /**
+   * true if the text at the current position starts with prefix
+   */
+  public boolean startsWith(String prefix) {
+    int n = prefix.length();
+    if (pos + n > limit) return false;
+    for (int k=0; k<n; k++) {
+      if (buf.get(pos + k) != prefix.charAt(k)) return false;
+    }
+    return true;
+  }
+
+  /**
+   * move to the beginning of the next line
+   */
+  public void skipLine() {
+    while (pos < limit && buf.get(pos) != '\n') pos++;
+    if (pos < limit) pos++;
+  }
+
+  /**
+   * move to the beginning of the next line starting with prefix
+   *
+   * @return false if there is no such line
+   */
+  public boolean skipTo(String prefix) {
+    while (pos < limit) {
+      if (startsWith(prefix)) return true;
+      skipLine();
+    }
+    return false;
+  }
+
+  /**
+   * header value: what follows the first ':' on the current line,
+   * with all white spaces removed. the position is left at the
+   * end of the line
+   */
+  public String value() {
+    while (pos < limit && buf.get(pos) != ':' && buf.get(pos) != '\n') pos++;
+    if (pos < limit && buf.get(pos) == ':') pos++;
+
+    StringBuilder sb = new StringBuilder();
+    while (pos < limit) {
+      byte b = buf.get(pos);
+      if (b == '\n') break;
+      if (!space(b)) sb.append((char) b);
+      pos++;
+    }
+    return sb.toString();
+  }
+
+
+  //===================================
+  // numbers
+  //===================================
+
+  private static boolean space(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+
+  private void skipSpaces() {
+    while (pos < limit && space(buf.get(pos))) pos++;
+  }
+
+  public int nextInt() {
+    return (int) nextLong();
+  }
+
+  public long nextLong() {
+
+    skipSpaces();
+    if (pos >= limit) throw new NumberFormatException("end of input");
+
+    boolean neg = false;
+    byte b = buf.get(pos);
+    if (b == '-' || b == '+') {
+      neg = b == '-';
+      pos++;
+    }
+
+    int start = pos;
+    long v = 0;
+    while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9') {
+      v = 10*v + (b - '0');
+      pos++;
+    }
+    if (pos == start) throw new NumberFormatException("not a number at byte " + pos);
+    return neg ? -v : v;
+  }
+
+  // exact powers of ten
+  private static final double[] POW10 = new double[23];
+  static {
+    POW10[0] = 1;
+    for (int k=1; k<POW10.length; k++) POW10[k] = 10 * POW10[k-1];
+  }
+
+  /**
+   * parse a decimal number like 6.91100e+02
+   *
+   * numbers with at most 15 significant digits and a small
+   * exponent are computed exactly with one multiplication or
+   * division (correctly rounded, like Double.parseDouble),
+   * the others fall back to Double.parseDouble
+   */
+  public double nextDouble() {
+
+    skipSpaces();
+    int start = pos;
+
+    boolean neg = false;
+    byte b = pos < limit ? buf.get(pos) : 0;
+    if (b == '-' || b == '+') {
+      neg = b == '-';
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0, exp10 = 0;
+    boolean any = false;
+
+    // integer part
+    while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9') {
+      if (mantissa != 0 || b != '0') {
+        if (digits < 18) {
+          mantissa = 10*mantissa + (b - '0');
+          digits++;
+        }
+        else {
+          exp10++;
+          digits++;
+        }
+      }
+      any = true;
+      pos++;
+    }
+
+    // fraction
+    if (pos < limit && buf.get(pos) == '.') {
+      pos++;
+      while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9') {
+        if (mantissa != 0 || b != '0') {
+          if (digits < 18) {
+            mantissa = 10*mantissa + (b - '0');
+            exp10--;
+          }
+          digits++;
+        }
+        else {
+          exp10--;
+        }
+        any = true;
+        pos++;
+      }
+    }
+    if (!any) throw new NumberFormatException("not a number at byte " + start);
+
+    // exponent
+    if (pos < limit && ((b = buf.get(pos)) == 'e' || b == 'E')) {
+      pos++;
+      exp10 += nextExponent();
+    }
+
+    if (digits <= 15 && Math.abs(exp10) < POW10.length) {
+      double v = exp10 >= 0 ? mantissa * POW10[exp10] : mantissa / POW10[-exp10];
+      return neg ? -v : v;
+    }
+
+    // slow path
+    byte[] text = new byte[pos - start];
+    for (int k=0; k<text.length; k++) text[k] = buf.get(start + k);
+    return Double.parseDouble(new String(text, StandardCharsets.US_ASCII));
+  }
+
+  private int nextExponent() {
+    boolean neg = false;
+    byte b = pos < limit ? buf.get(pos) : 0;
+    if (b == '-' || b == '+') {
+      neg = b == '-';
+      pos++;
+    }
+    int e = 0;
+    while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9') {
+      if (e < 100000) e = 10*e + (b - '0');
+      pos++;
+    }
+    return neg ? -e : e;
+  }
+}
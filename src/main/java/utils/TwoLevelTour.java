@@ -0,0 +1,316 @@
+package utils;
+
+/**
+ * 2-level doubly-linked list tour
+ *
+ * the cycle is a list of segments, each one a slot range of
+ * one city array with a reversed bit. next/prev are O(1), a
+ * path reversal splits at most two segments (the smaller part
+ * is relabeled) and reverses the run of whole segments between
+ * them, or the complementary run if it is shorter: about
+ * sqrt(n) work instead of up to n/2 swaps in a plain array.
+ * paths (or rests of the cycle) over at most 3 segments are
+ * reversed in place by swapping cities. the segments are
+ * rebuilt to groupSize cities when splits made too many
+ *
+ * reverse may reverse the other side of the cycle instead,
+ * which gives the same cycle in the opposite direction
+ */
+public class TwoLevelTour {
+
+  private final int n;
+  // target segment size
+  private final int groupSize;
+
+  // city at each slot, slot and segment of each city
+  private final int[] city;
+  private final int[] slot;
+  private final int[] parent;
+
+  // segments: slot range, reversed bit, index in the cycle
+  private final int[] lo;
+  private final int[] hi;
+  private final boolean[] rev;
+  private final int[] ord;
+  // segments in cycle order
+  private final int[] order;
+  private int m;
+
+  // cycle order buffer of layout
+  private final int[] buffer;
+
+
+  // below this many cities one segment (a plain array) is
+  // faster: its next/prev are cheaper and reversals are short
+  public static final int SMALL = 20000;
+
+  /**
+   * one segment below SMALL cities, else segments of sqrt(n)
+   */
+  public TwoLevelTour(int n) {
+    this(n, n < SMALL ? n : (int) Math.sqrt(n));
+  }
+
+  /**
+   * segments of groupSize cities, groupSize >= n is a plain
+   * array (one segment)
+   */
+  public TwoLevelTour(int n, int groupSize) {
+    this.n = n;
+    this.groupSize = Math.min(Math.max(1, groupSize), Math.max(1, n));
+    this.city = new int[n];
+    this.slot = new int[n];
+    this.parent = new int[n];
+    this.buffer = new int[n];
+    // rebuilt before a reversal could overflow
+    int maxSegs = 3 * ((n + this.groupSize - 1) / this.groupSize) + 4;
+    this.lo = new int[maxSegs];
+    this.hi = new int[maxSegs];
+    this.rev = new boolean[maxSegs];
+    this.ord = new int[maxSegs];
+    this.order = new int[maxSegs];
+  }
+
+
+  /**
+   * cycle of the 0-based cities x[0], x[1], ...
+   */
+  public void load(int[] x) {
+    System.arraycopy(x, 0, city, 0, n);
+    m = 0;
+    layout();
+  }
+
+  /**
+   * cities in cycle order from the first one
+   */
+  public void toArray(int[] x) {
+    int k = 0;
+    for (int i = 0; i < m; i++) {
+      int s = order[i];
+      if (rev[s]) for (int p = hi[s]; p >= lo[s]; p--) x[k++] = city[p];
+      else for (int p = lo[s]; p <= hi[s]; p++) x[k++] = city[p];
+    }
+  }
+
+  // first city of the cycle order
+  public int first() {
+    return head(order[0]);
+  }
+
+  public int next(int c) {
+    int s = parent[c];
+    int p = slot[c];
+    if (rev[s]) {
+      if (p > lo[s]) return city[p - 1];
+    }
+    else if (p < hi[s]) return city[p + 1];
+    int i = ord[s] + 1;
+    return head(order[i == m ? 0 : i]);
+  }
+
+  public int prev(int c) {
+    int s = parent[c];
+    int p = slot[c];
+    if (rev[s]) {
+      if (p < hi[s]) return city[p + 1];
+    }
+    else if (p > lo[s]) return city[p - 1];
+    int i = ord[s] - 1;
+    return tail(order[i < 0 ? m - 1 : i]);
+  }
+
+
+  /**
+   * reverse the path from x to y (cycle order)
+   */
+  public void reverse(int x, int y) {
+    // a single city, or the whole cycle
+    if (x == y || next(y) == x) return;
+
+    int s = parent[x];
+    if (s == parent[y]) {
+      int ix = index(x), iy = index(y);
+      if (ix <= iy) {
+        // or the rest of the cycle if shorter (one segment)
+        if (2 * (iy - ix + 1) > n) swapPath(next(y), prev(x));
+        else reverseSlots(slot[x], slot[y]);
+        return;
+      }
+      // the path wraps around the cycle: reverse the
+      // rest, which lies inside the segment
+      reverseSlots(slot[next(y)], slot[prev(x)]);
+      return;
+    }
+
+    // short paths (or rests): swap the cities
+    int d = ord[parent[y]] - ord[s];
+    if (d < 0) d += m;
+    if (d <= 2) {
+      swapPath(x, y);
+      return;
+    }
+    if (m - d <= 2) {
+      swapPath(next(y), prev(x));
+      return;
+    }
+
+    if (m + 2 > order.length) layout();
+    splitBefore(x);
+    splitBefore(next(y));
+
+    // runs of whole segments x..y and the rest
+    int i = ord[parent[x]], j = ord[parent[y]];
+    int len = j - i;
+    if (len < 0) len += m;
+    len++;
+    if (2 * len > m) {
+      int k = i;
+      i = j + 1 == m ? 0 : j + 1;
+      j = k == 0 ? m - 1 : k - 1;
+      len = m - len;
+    }
+    int start = i;
+    for (int t = len / 2; t > 0; t--) {
+      int si = order[i], sj = order[j];
+      order[i] = sj;
+      ord[sj] = i;
+      order[j] = si;
+      ord[si] = j;
+      if (++i == m) i = 0;
+      if (--j < 0) j = m - 1;
+    }
+    for (int t = 0, k = start; t < len; t++) {
+      rev[order[k]] = !rev[order[k]];
+      if (++k == m) k = 0;
+    }
+  }
+
+
+  //===================================
+  // segments
+  //===================================
+
+  private int head(int s) {
+    return rev[s] ? city[hi[s]] : city[lo[s]];
+  }
+
+  private int tail(int s) {
+    return rev[s] ? city[lo[s]] : city[hi[s]];
+  }
+
+  // position of c in its segment, cycle order
+  private int index(int c) {
+    int s = parent[c];
+    return rev[s] ? hi[s] - slot[c] : slot[c] - lo[s];
+  }
+
+  // reverse the cities of the slots a..b (either order), one segment
+  private void reverseSlots(int a, int b) {
+    if (a > b) {
+      int t = a;
+      a = b;
+      b = t;
+    }
+    while (a < b) {
+      int ca = city[a], cb = city[b];
+      city[a] = cb;
+      slot[cb] = a;
+      city[b] = ca;
+      slot[ca] = b;
+      a++;
+      b--;
+    }
+  }
+
+  // reverse the path x..y (a few segments) by swapping
+  // its cities from both ends
+  private void swapPath(int x, int y) {
+    while (x != y) {
+      int nx = next(x);
+      int py = prev(y);
+      swap(x, y);
+      if (nx == y) return;
+      x = nx;
+      y = py;
+    }
+  }
+
+  private void swap(int a, int b) {
+    int pa = slot[a], pb = slot[b];
+    int sa = parent[a];
+    city[pa] = b;
+    city[pb] = a;
+    slot[a] = pb;
+    slot[b] = pa;
+    parent[a] = parent[b];
+    parent[b] = sa;
+  }
+
+  // make c the first city of its segment, the smaller
+  // part becomes a new segment
+  private void splitBefore(int c) {
+    int s = parent[c];
+    int k = index(c);
+    if (k == 0) return;
+    int size = hi[s] - lo[s] + 1;
+
+    // slots of the part before c and of the part from c on
+    int aLo, aHi, bLo, bHi;
+    if (rev[s]) {
+      aLo = slot[c] + 1; aHi = hi[s];
+      bLo = lo[s];       bHi = slot[c];
+    }
+    else {
+      aLo = lo[s];       aHi = slot[c] - 1;
+      bLo = slot[c];     bHi = hi[s];
+    }
+
+    int t = m;
+    rev[t] = rev[s];
+    int at;
+    if (k <= size - k) {
+      // new segment before s
+      lo[t] = aLo; hi[t] = aHi;
+      lo[s] = bLo; hi[s] = bHi;
+      at = ord[s];
+    }
+    else {
+      // new segment after s
+      lo[t] = bLo; hi[t] = bHi;
+      lo[s] = aLo; hi[s] = aHi;
+      at = ord[s] + 1;
+    }
+    for (int p = lo[t]; p <= hi[t]; p++) parent[city[p]] = t;
+
+    for (int i = m; i > at; i--) {
+      order[i] = order[i - 1];
+      ord[order[i]] = i;
+    }
+    order[at] = t;
+    ord[t] = at;
+    m++;
+  }
+
+  // segments of groupSize cities in cycle order
+  private void layout() {
+    if (m > 0) {
+      // the city array in cycle order
+      toArray(buffer);
+      System.arraycopy(buffer, 0, city, 0, n);
+    }
+    m = 0;
+    for (int a = 0; a < n; a += groupSize) {
+      lo[m] = a;
+      hi[m] = Math.min(n, a + groupSize) - 1;
+      rev[m] = false;
+      order[m] = m;
+      ord[m] = m;
+      for (int p = lo[m]; p <= hi[m]; p++) {
+        slot[city[p]] = p;
+        parent[city[p]] = m;
+      }
+      m++;
+    }
+  }
+}
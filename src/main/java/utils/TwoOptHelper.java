@@ -1,5 +1,8 @@
 package utils;
 
+import ttp.TTPInstance;
+import ttp.TTPSolution;
+
 /**
  * 2-OPT operations
  * 
@@ -74,6 +77,80 @@ public class TwoOptHelper {
 
 
 
+  /**
+   * do 2opt arcs exchange on a solution
+   *
+   * reverses tour[i..j] and keeps the tour mapper and
+   * the leg lengths up to date: the reversed legs are
+   * moved, only the two boundary legs are recomputed
+   *
+   * @param ttp TTP instance
+   * @param sol TTP solution
+   * @param i beginning
+   * @param j end
+   */
+  public static void do2opt(TTPInstance ttp, TTPSolution sol, int i, int j) {
+
+    int[] tour = sol.getTour();
+    long[] legs = sol.legDist;
+    int n = tour.length;
+
+    do2opt(tour, i, j);
+
+    // legs i..j-1 are reversed
+    long tmp;
+    for (int k=i, l=j-1; k<l; k++, l--) {
+      tmp = legs[k];
+      legs[k] = legs[l];
+      legs[l] = tmp;
+    }
+
+    // boundary legs
+    int h = (i-1+n) % n;
+    legs[h] = ttp.distFor(tour[h]-1, tour[i]-1);
+    legs[j] = ttp.distFor(tour[j]-1, tour[(j+1)%n]-1);
+
+    for (int k=i; k<=j; k++) {
+      sol.mapCI[tour[k]-1] = k;
+    }
+
+    // leg i-1 and the positions from i on
+    sol.markDirty(h < i ? h : 0);
+  }
+
+
+  /**
+   * do or-opt segment relocation on a solution
+   *
+   * moves tour[s..e] between tour[p] and tour[p+1]
+   * (p outside s-1..e), reversed if rev is set.
+   * done with 2 or 3 reversals, so the tour mapper
+   * and the leg lengths are kept up to date
+   *
+   * @param ttp TTP instance
+   * @param sol TTP solution
+   * @param s segment beginning
+   * @param e segment end
+   * @param p insertion position
+   * @param rev reverse the segment
+   */
+  public static void doOrOpt(TTPInstance ttp, TTPSolution sol, int s, int e, int p, boolean rev) {
+
+    if (p > e) {
+      // A B -> B A, with B = tour[e+1..p]
+      do2opt(ttp, sol, s, p);
+      do2opt(ttp, sol, s, s+p-e-1);
+      if (!rev) do2opt(ttp, sol, p-e+s, p);
+    }
+    else {
+      // B A -> A B, with B = tour[p+1..s-1]
+      do2opt(ttp, sol, p+1, e);
+      do2opt(ttp, sol, p+e-s+2, e);
+      if (!rev) do2opt(ttp, sol, p+1, p+e-s+1);
+    }
+  }
+
+
   /**
    * do random 2opt arcs exchange
    */